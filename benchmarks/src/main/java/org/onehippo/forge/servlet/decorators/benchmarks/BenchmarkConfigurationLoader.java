@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import org.onehippo.forge.servlet.decorators.common.ConfigurationData;
+import org.onehippo.forge.servlet.decorators.common.ConfigurationSource;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
+
+/**
+ * Loader reading generated configurations from a {@link ConfigurationSource} instead of the repository.
+ */
+class BenchmarkConfigurationLoader extends DecoratorConfigurationLoader {
+
+    BenchmarkConfigurationLoader(final ConfigurationData data) {
+        setConfigurationSource(new ConfigurationSource() {
+            @Override
+            public ConfigurationData read() {
+                return data;
+            }
+
+            @Override
+            public void start(final Runnable changeListener) {
+            }
+
+            @Override
+            public void stop() {
+            }
+        });
+        load();
+    }
+}
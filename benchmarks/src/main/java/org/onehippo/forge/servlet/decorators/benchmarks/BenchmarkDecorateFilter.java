@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import org.onehippo.forge.servlet.decorators.ConfigurableDecoratorFilter;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
+
+class BenchmarkDecorateFilter extends ConfigurableDecoratorFilter {
+
+    BenchmarkDecorateFilter(final DecoratorConfigurationLoader loader) {
+        configLoader = loader;
+    }
+
+    @Override
+    protected void initializeConfigManager() {
+        initialized = true;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfiguration;
+import org.onehippo.forge.servlet.decorators.common.HostMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code DecoratorConfiguration.Builder.build} pattern compilation, plus compiling the result into a
+ * {@link HostMatcher} as done on every configuration reload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int patterns;
+
+    private Map<String, String> mappings;
+    private Set<DecoratorConfiguration> configurations;
+
+    @Setup
+    public void setUp() {
+        mappings = HostPatterns.mappings(patterns);
+        configurations = HostPatterns.build(mappings);
+    }
+
+    @Benchmark
+    public Set<DecoratorConfiguration> build() {
+        return HostPatterns.build(mappings);
+    }
+
+    @Benchmark
+    public HostMatcher compileMatcher() {
+        return HostMatcher.compile(configurations);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ConfigurableDecoratorFilter.doFilter} on resolution cache hits and misses. Misses cycle through a pool of
+ * distinct hosts generated per iteration, so they measure host extraction plus matching against the patterns. The
+ * caches are only cleared when the pool wraps around, a cost amortized over the pool size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecorateFilterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int patterns;
+
+    private BenchmarkDecorateFilter filter;
+    private HttpServletRequest matched;
+    private HttpServletRequest unmatched;
+    private ServletResponse response;
+    private FilterChain chain;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+        filter = new BenchmarkDecorateFilter(HostPatterns.loader(patterns));
+        filter.init(null);
+        // last configuration, so a miss walks the full priority list:
+        matched = MockRequests.request(HostPatterns.host(patterns - 1), HostPatterns.CONTEXT_PATH, "/site/news");
+        unmatched = MockRequests.request("unknown.example.io", HostPatterns.CONTEXT_PATH, "/site/news");
+        response = MockRequests.response();
+        chain = (request, response) -> this.blackhole.consume(request);
+    }
+
+    /**
+     * Unregisters the MBean and releases the shared scheduler, so the next {@code patterns} trial starts clean.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        filter.destroy();
+    }
+
+    @State(Scope.Thread)
+    public static class Miss {
+        private static final int POOL_SIZE = 1 << 14;
+
+        private HttpServletRequest[] matched;
+        private HttpServletRequest[] unmatched;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(final DecorateFilterBenchmark benchmark) {
+            final String[] hosts = HostPatterns.suffixHosts(benchmark.patterns, POOL_SIZE);
+            matched = new HttpServletRequest[POOL_SIZE];
+            unmatched = new HttpServletRequest[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                matched[i] = MockRequests.request(hosts[i], HostPatterns.CONTEXT_PATH, "/site/news");
+                unmatched[i] = MockRequests.request("unknown" + i + ".example.io", HostPatterns.CONTEXT_PATH, "/site/news");
+            }
+            next = 0;
+            clear(benchmark);
+        }
+
+        /**
+         * @return index of the next pool request, the caches are cleared when the pool wraps around
+         */
+        private int next(final DecorateFilterBenchmark benchmark) {
+            if (next == POOL_SIZE) {
+                next = 0;
+                clear(benchmark);
+            }
+            return next++;
+        }
+
+        private static void clear(final DecorateFilterBenchmark benchmark) {
+            benchmark.filter.getCache().invalidateAll();
+            benchmark.filter.getNegativeCache().clear();
+        }
+    }
+
+    @Benchmark
+    public void hit() throws IOException, ServletException {
+        filter.doFilter(matched, response, chain);
+    }
+
+    @Benchmark
+    public void miss(final Miss miss) throws IOException, ServletException {
+        filter.doFilter(miss.matched[miss.next(this)], response, chain);
+    }
+
+    @Benchmark
+    public void unmatchedHit() throws IOException, ServletException {
+        filter.doFilter(unmatched, response, chain);
+    }
+
+    @Benchmark
+    public void unmatchedMiss(final Miss miss) throws IOException, ServletException {
+        filter.doFilter(miss.unmatched[miss.next(this)], response, chain);
+    }
+}
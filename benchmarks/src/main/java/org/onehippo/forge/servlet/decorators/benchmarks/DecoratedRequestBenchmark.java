@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfiguration;
+import org.onehippo.forge.servlet.decorators.common.HippoDecoratedServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of repeated {@code getRequestURI}/{@code getContextPath} calls on one decorated request, as done by
+ * downstream filters and frameworks, including the first (uncached) call on a fresh wrapper.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoratedRequestBenchmark {
+
+    @Param({"1", "10"})
+    public int calls;
+
+    private HttpServletRequest original;
+    private DecoratorConfiguration configuration;
+    private HippoDecoratedServletRequest decorated;
+
+    @Setup
+    public void setUp() {
+        configuration = DecoratorConfiguration.Builder.start()
+                .hosts(ImmutableMap.of("www\\.example\\.com", "")).enabled(true).build().iterator().next();
+        original = MockRequests.request("www.example.com", "/site", "/site/news/2018/article.html");
+        decorated = new HippoDecoratedServletRequest(original, configuration);
+    }
+
+    @Benchmark
+    public void repeated(final Blackhole blackhole) {
+        for (int i = 0; i < calls; i++) {
+            blackhole.consume(decorated.getRequestURI());
+            blackhole.consume(decorated.getContextPath());
+        }
+    }
+
+    @Benchmark
+    public void fresh(final Blackhole blackhole) {
+        final HippoDecoratedServletRequest request = new HippoDecoratedServletRequest(original, configuration);
+        for (int i = 0; i < calls; i++) {
+            blackhole.consume(request.getRequestURI());
+            blackhole.consume(request.getContextPath());
+        }
+    }
+}
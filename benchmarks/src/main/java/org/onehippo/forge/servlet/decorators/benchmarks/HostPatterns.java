@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import org.onehippo.forge.servlet.decorators.common.CacheSettings;
+import org.onehippo.forge.servlet.decorators.common.ConfigurationData;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfiguration;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates host pattern configurations mixing literal, suffix and regular expression patterns.
+ */
+final class HostPatterns {
+
+    static final String CONTEXT_PATH = "/site";
+
+    private HostPatterns() {
+    }
+
+    /**
+     * @return host name to context path mappings, as stored on the configuration nodes
+     */
+    static Map<String, String> mappings(final int count) {
+        final Map<String, String> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    mappings.put("www\\.host" + i + "\\.example\\.com", CONTEXT_PATH);
+                    break;
+                case 1:
+                    mappings.put(".*\\.host" + i + "\\.example\\.org", CONTEXT_PATH);
+                    break;
+                default:
+                    mappings.put("(preview|live)-" + i + "\\.example\\.net", CONTEXT_PATH);
+            }
+        }
+        return mappings;
+    }
+
+    static Set<DecoratorConfiguration> build(final Map<String, String> mappings) {
+        return DecoratorConfiguration.Builder.start().hosts(mappings).enabled(true).build();
+    }
+
+    /**
+     * @return a host matching the configuration with given index
+     */
+    static String host(final int index) {
+        switch (index % 3) {
+            case 0:
+                return "www.host" + index + ".example.com";
+            case 1:
+                return "cdn.host" + index + ".example.org";
+            default:
+                return "live-" + index + ".example.net";
+        }
+    }
+
+    /**
+     * @return distinct hosts matching the last suffix pattern of given number of patterns, so each one misses the
+     * resolution cache
+     */
+    static String[] suffixHosts(final int count, final int size) {
+        int index = count - 1;
+        while (index % 3 != 1) {
+            index--;
+        }
+        final String[] hosts = new String[size];
+        for (int i = 0; i < size; i++) {
+            hosts[i] = "cdn" + i + ".host" + index + ".example.org";
+        }
+        return hosts;
+    }
+
+    /**
+     * @return loader with given number of generated patterns loaded
+     */
+    static BenchmarkConfigurationLoader loader(final int count) {
+        final Map<String, Collection<DecoratorConfiguration>> nodes = new LinkedHashMap<>();
+        nodes.put("benchmark", build(mappings(count)));
+        return new BenchmarkConfigurationLoader(new ConfigurationData(nodes, CacheSettings.DEFAULT, ImmutableList.of(), null));
+    }
+}
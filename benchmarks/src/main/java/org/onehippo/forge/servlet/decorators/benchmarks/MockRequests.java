@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal {@link HttpServletRequest} and {@link HttpServletResponse} stand-ins, so benchmarks need no servlet container.
+ */
+final class MockRequests {
+
+    private MockRequests() {
+    }
+
+    static HttpServletRequest request(final String host, final String contextPath, final String requestUri) {
+        final Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest) Proxy.newProxyInstance(MockRequests.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getHeader":
+                            return "Host".equalsIgnoreCase((String) args[0]) ? host : null;
+                        case "getServerName":
+                            return host;
+                        case "getServerPort":
+                            return 80;
+                        case "getScheme":
+                            return "http";
+                        case "getContextPath":
+                            return contextPath;
+                        case "getRequestURI":
+                            return requestUri;
+                        case "getRequestURL":
+                            return new StringBuffer("http://").append(host).append(requestUri);
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "MockRequest[" + host + requestUri + ']';
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    static HttpServletResponse response() {
+        return (HttpServletResponse) Proxy.newProxyInstance(MockRequests.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "MockResponse";
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import org.onehippo.forge.servlet.decorators.common.CommonUndecorateFilter;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfiguration;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConst;
+import org.onehippo.forge.servlet.decorators.common.HippoDecoratedServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CommonUndecorateFilter.doFilter} with the decorated request wrapped into 0 to 4 foreign wrappers
+ * (unwrap depth 1 to 5), e.g. by security filters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UndecorateBenchmark {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int depth;
+
+    private final CommonUndecorateFilter filter = new CommonUndecorateFilter() {
+    };
+    private ServletRequest request;
+    private ServletResponse response;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        final DecoratorConfiguration configuration = DecoratorConfiguration.Builder.start()
+                .hosts(ImmutableMap.of("www\\.example\\.com", "")).enabled(true).build().iterator().next();
+        final HttpServletRequest original = MockRequests.request("www.example.com", "/site", "/site/news");
+        final HippoDecoratedServletRequest decorated = new HippoDecoratedServletRequest(original, configuration);
+        // as registered by the decorate filter:
+        original.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED, decorated);
+        HttpServletRequestWrapper wrapper = decorated;
+        for (int i = 1; i < depth; i++) {
+            wrapper = new HttpServletRequestWrapper(wrapper);
+        }
+        request = wrapper;
+        response = MockRequests.response();
+        chain = (req, res) -> blackhole.consume(req);
+    }
+
+    @Benchmark
+    public void undecorate() throws IOException, ServletException {
+        filter.doFilter(request, response, chain);
+    }
+}
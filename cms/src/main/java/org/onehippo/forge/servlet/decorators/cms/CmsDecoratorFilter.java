@@ -28,6 +28,7 @@ import javax.jcr.Session;
 public class CmsDecoratorFilter extends ConfigurableDecoratorFilter {
 
     private static final Logger log = LoggerFactory.getLogger(CmsDecoratorFilter.class);
+    private volatile boolean waitingLogged;
     
     @Override
     protected void initializeConfigManager() {
@@ -42,11 +43,23 @@ public class CmsDecoratorFilter extends ConfigurableDecoratorFilter {
             configLoader = new CmsDecoratorConfigurationLoader(session, service);
             log.info("Successfully configured ServletDecoratorService");
             initialized = true;
+        } else if (waitingLogged) {
+            log.debug("ServletDecoratorService not yet available in registry");
         } else {
-            // info because always so on startup
+            // info once because always so on startup, polled until available
+            waitingLogged = true;
             log.info("ServletDecoratorService not yet available in registry");
         }
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        // the CMS loader is owned by this filter
+        if (configLoader != null) {
+            configLoader.shutdown();
+        }
+    }
+
 
 }
@@ -27,17 +27,21 @@ public class CmsDecoratorConfigurationLoader extends DecoratorConfigurationLoade
     
     private final Session session;
     private final ServletDecoratorService service;
+    private final Runnable changeListener = this::invalidate;
 
     public CmsDecoratorConfigurationLoader(final Session session, final ServletDecoratorService service) {
         this.session = session;
         this.service = service;
         setConfigurationLocation(getDefaultConfigurationLocation());
+        // (debounced) reload in the background as soon as the module reports a change:
+        service.addChangeListener(changeListener);
     }
 
     @Override
     public boolean needReloading() {
         if (service.configurationChanged()) {
-            needRefresh = true;
+            // the module doesn't tell what changed:
+            requestFullReload();
             service.setConfigurationChanged(false);
         }
         return needRefresh;
@@ -54,6 +58,12 @@ public class CmsDecoratorConfigurationLoader extends DecoratorConfigurationLoade
         return session;
     }
 
+    @Override
+    public void shutdown() {
+        service.removeChangeListener(changeListener);
+        super.shutdown();
+    }
+
     protected String getDefaultConfigurationLocation() {
         return DEFAULT_CONFIGURATION_PATH;
     }
@@ -17,29 +17,58 @@
 package org.onehippo.forge.servlet.decorators.service;
 
 import org.onehippo.cms7.services.HippoServiceRegistry;
+import org.onehippo.forge.servlet.decorators.common.ConfigurationChecksum;
 import org.onehippo.repository.modules.AbstractReconfigurableDaemonModule;
 import org.onehippo.repository.modules.ProvidesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.Node;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
 
 @ProvidesService(types = ServletDecoratorService.class)
 public class ServletDecoratorModule extends AbstractReconfigurableDaemonModule {
     private static final Logger log = LoggerFactory.getLogger(ServletDecoratorModule.class);
 
     private ServletDecoratorService service;
+    private Session checksumSession;
 
     @Override
     protected void doConfigure(final Node node) {
         log.debug("(Re)configuring {}, with service {}", this.getClass().getSimpleName(),
                 (service == null) ? "null" : service.getClass().getSimpleName());
+        updateChecksum(node);
         if (service != null) {
             service.setConfigurationChanged(true);
         }
     }
 
+    /**
+     * Stores the configuration checksum, so HST nodes only reload when the configuration actually changed. It is
+     * computed and written with a dedicated session, the module session is shared with the service, which reads the
+     * configuration on other threads.
+     */
+    private synchronized void updateChecksum(final Node node) {
+        try {
+            if (checksumSession == null) {
+                checksumSession = node.getSession().impersonate(new SimpleCredentials("system", new char[]{}));
+            }
+            ConfigurationChecksum.update(checksumSession, node.getPath());
+        } catch (RepositoryException e) {
+            // e.g. written concurrently by another cluster node, with the same value
+            log.warn("Cannot update decorator configuration checksum: {}", e.toString());
+            try {
+                if (checksumSession != null) {
+                    checksumSession.refresh(false);
+                }
+            } catch (RepositoryException ignore) {
+                log.debug("Cannot refresh session", ignore);
+            }
+        }
+    }
+
     @Override
     protected void doInitialize(final Session session) {
         service = new ServletDecoratorServiceImpl(session);
@@ -49,6 +78,12 @@ public class ServletDecoratorModule extends AbstractReconfigurableDaemonModule {
     @Override
     protected void doShutdown() {
         HippoServiceRegistry.unregisterService(service, ServletDecoratorService.class);
+        synchronized (this) {
+            if (checksumSession != null) {
+                checksumSession.logout();
+                checksumSession = null;
+            }
+        }
     }
 
 }
@@ -28,4 +28,11 @@ public interface ServletDecoratorService {
     boolean configurationChanged();
 
     void setConfigurationChanged(boolean configurationChanged);
+
+    /**
+     * Registers a listener that is run (on the thread reporting the change) whenever the configuration changed.
+     */
+    void addChangeListener(Runnable listener);
+
+    void removeChangeListener(Runnable listener);
 }
@@ -16,11 +16,19 @@
 
 package org.onehippo.forge.servlet.decorators.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.jcr.Session;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ServletDecoratorServiceImpl implements ServletDecoratorService {
 
+    private static final Logger log = LoggerFactory.getLogger(ServletDecoratorServiceImpl.class);
+
     private final Session session;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
 
     // NOTE: default must be true to load initial data
     private transient boolean changed = true;
@@ -42,5 +50,24 @@ public class ServletDecoratorServiceImpl implements ServletDecoratorService {
     @Override
     public void setConfigurationChanged(final boolean configurationChanged) {
         changed = configurationChanged;
+        if (configurationChanged) {
+            for (Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    log.error("Error notifying configuration change listener", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addChangeListener(final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(final Runnable listener) {
+        listeners.remove(listener);
     }
 }
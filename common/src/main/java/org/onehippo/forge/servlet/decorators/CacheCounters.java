@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators;
+
+import org.onehippo.forge.servlet.decorators.common.NegativeHostCache;
+import org.onehippo.forge.servlet.decorators.common.ResolutionCache;
+
+/**
+ * Counters of the resolution caches of a filter, including the counts of the caches they replaced when the cache
+ * settings changed, so exported counters never go backwards. Published together with the caches they read, so the
+ * counts are never taken from a replaced cache and its successor at once.
+ */
+final class CacheCounters {
+
+    private final ResolutionCache<?> cache;
+    private final NegativeHostCache negativeCache;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long refreshes;
+    private final long rejected;
+
+    /**
+     * @param previous counters of the replaced caches or null if none
+     */
+    CacheCounters(final ResolutionCache<?> cache, final NegativeHostCache negativeCache, final CacheCounters previous) {
+        this.cache = cache;
+        this.negativeCache = negativeCache;
+        this.hits = previous == null ? 0 : previous.getHitCount();
+        this.misses = previous == null ? 0 : previous.getMissCount();
+        this.evictions = previous == null ? 0 : previous.getEvictionCount();
+        this.refreshes = previous == null ? 0 : previous.getRefreshCount();
+        this.rejected = previous == null ? 0 : previous.getNegativeRejectedCount();
+    }
+
+    long getHitCount() {
+        return hits + cache.getHitCount();
+    }
+
+    long getMissCount() {
+        return misses + cache.getMissCount();
+    }
+
+    long getEvictionCount() {
+        return evictions + cache.getEvictionCount();
+    }
+
+    long getRefreshCount() {
+        return refreshes + cache.getRefreshCount();
+    }
+
+    long getNegativeRejectedCount() {
+        return rejected + negativeCache.getRejectedCount();
+    }
+}
@@ -16,148 +16,647 @@
 
 package org.onehippo.forge.servlet.decorators;
 
-import com.google.common.base.Strings;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.base.Splitter;
+import org.onehippo.forge.servlet.decorators.common.CacheSettings;
+import org.onehippo.forge.servlet.decorators.common.ConfigurationSnapshot;
+import org.onehippo.forge.servlet.decorators.common.DaemonThreads;
+import org.onehippo.forge.servlet.decorators.common.DecisionTracer;
 import org.onehippo.forge.servlet.decorators.common.DecoratorConfiguration;
 import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
 import org.onehippo.forge.servlet.decorators.common.DecoratorConst;
+import org.onehippo.forge.servlet.decorators.common.DecoratorMetrics;
 import org.onehippo.forge.servlet.decorators.common.HippoDecoratedServletRequest;
+import org.onehippo.forge.servlet.decorators.common.HostExtractor;
+import org.onehippo.forge.servlet.decorators.common.HostNormalizer;
+import org.onehippo.forge.servlet.decorators.common.HostResolution;
+import org.onehippo.forge.servlet.decorators.common.NegativeHostCache;
+import org.onehippo.forge.servlet.decorators.common.RequestScope;
+import org.onehippo.forge.servlet.decorators.common.ResolutionCache;
+import org.onehippo.forge.servlet.decorators.common.SharedScheduler;
+import org.onehippo.forge.servlet.decorators.common.SnapshotFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.util.Set;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class ConfigurableDecoratorFilter implements Filter {
 
 
     private static final Logger log = LoggerFactory.getLogger(ConfigurableDecoratorFilter.class);
     protected DecoratorConfigurationLoader configLoader;
-    private LoadingCache<String, DecoratorConfiguration> cache;
-    protected boolean initialized;
+    private volatile ResolutionCache<HostResolution> cache;
+    private volatile NegativeHostCache negativeCache;
+    private volatile CacheCounters cacheCounters;
+    private volatile CacheSettings cacheSettings;
+    private volatile ConfigurationSnapshot snapshot = ConfigurationSnapshot.EMPTY;
+    private final DecoratorMetrics metrics = new DecoratorMetrics();
+    private volatile DecisionTracer tracer = new DecisionTracer(DecoratorConst.TRACE_CAPACITY);
+    private ObjectName objectName;
+    private ServletContext servletContext;
+    private Path snapshotFile;
+    private SharedScheduler scheduler;
+    private ScheduledFuture<?> warmupTask;
+    private int warmupAttempts;
+    private List<String> warmupHosts = Collections.emptyList();
+    private volatile boolean ready;
+    private final ReentrantLock initLock = new ReentrantLock();
+    private boolean asyncInitialLoad;
+    private boolean virtualThreads;
+    protected volatile boolean initialized;
 
     @Override
     public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
+        if (request instanceof HippoDecoratedServletRequest && request == request.getAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED)) {
+            // re-entered with our own wrapper, e.g. on an async dispatch: one wrapper serves the whole request
+            chain.doFilter(request, response);
+            return;
+        }
+        if (asyncInitialLoad && suspendUntilLoaded(request, response)) {
+            return;
+        }
 
         final DecoratorConfiguration configuration = config(request, response);
         if (configuration.disabled() || configuration.invalid()) {
-            log.debug("Invalid or disabled configuration, skipping decorating: {}", configuration);
+            log.trace("Invalid or disabled configuration, skipping decorating: {}", configuration);
+            metrics.recordPassedThrough(initialized && configuration.invalid());
             chain.doFilter(request, response);
             return;
         }
+        metrics.recordDecorated();
         final HippoDecoratedServletRequest decorated = new HippoDecoratedServletRequest((HttpServletRequest) request, configuration);
-        chain.doFilter(decorated, response);
+        // registered, so the undecorate filter finds it without walking the wrappers added in between:
+        final Object previous = request.getAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED);
+        request.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED, decorated);
+        try {
+            chain.doFilter(decorated, response);
+        } finally {
+            // async dispatches still need to find it:
+            RequestScope.end(request, () -> {
+                if (previous == null) {
+                    request.removeAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED);
+                } else {
+                    request.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED, previous);
+                }
+            });
+        }
     }
 
 
     @Override
     public void init(final javax.servlet.FilterConfig filterConfig) {
-        cache = CacheBuilder.newBuilder()
-                .maximumSize(DecoratorConst.CACHE_MAX_SIZE)
-                .expireAfterWrite(DecoratorConst.CACHE_EXPIRES_IN_DAYS, TimeUnit.DAYS)
-                .build(new CacheLoader<String, DecoratorConfiguration>() {
-                    private final ExecutorService executor = Executors.newFixedThreadPool(1);
-
-                    public DecoratorConfiguration load(String key) {
-                        return loadConfig(key);
-                    }
-
-                    @Override
-                    public ListenableFuture<DecoratorConfiguration> reload(final String key, final DecoratorConfiguration oldValue) throws Exception {
-                        final ListenableFutureTask<DecoratorConfiguration> task = ListenableFutureTask.create(() -> load(key));
-                        executor.execute(task);
-                        return task;
-                    }
-                });
+        cacheSettings = CacheSettings.DEFAULT;
+        cache = cacheSettings.createCache();
+        negativeCache = cacheSettings.createNegativeCache();
+        cacheCounters = new CacheCounters(cache, negativeCache, cacheCounters);
+        servletContext = filterConfig == null ? null : filterConfig.getServletContext();
+        initTracer(filterConfig);
+        initThreading(filterConfig);
+        scheduler = SharedScheduler.acquire(virtualThreads);
+        registerMBean(filterConfig);
+        restoreSnapshot(filterConfig);
+        startWarmup(filterConfig);
     }
 
 
     public DecoratorConfiguration config(final ServletRequest request, final ServletResponse response) {
         if (!initialized) {
-            requestData();
+            // never waits for the warm-up thread initializing meanwhile
+            requestData(false);
         }
 
-        if (!initialized) {
+        final ConfigurationSnapshot current;
+        if (initialized) {
+            // a suspended request waited long enough already:
+            current = currentSnapshot(request.getAttribute(DecoratorConst.REQUEST_ATTRIBUTE_SUSPENDED) == null);
+        } else if (snapshot.isRestored()) {
+            current = snapshot;
+        } else {
             log.debug("{}: not initialized yet", this.getClass().getSimpleName());
             return DecoratorConfiguration.INVALID;
         }
+        if (!ready && !current.isEmpty()) {
+            markReady();
+        }
+        final long start = System.nanoTime();
+        final String host = HostNormalizer.normalize(current.getHostExtractor().extract((HttpServletRequest) request));
+
+        final long version = current.getVersion();
+        final HostResolution resolution = lookup(current, host);
+        metrics.recordResolution(System.nanoTime() - start);
+        final DecoratorConfiguration configuration = resolution == null ? DecoratorConfiguration.INVALID : resolution.getConfiguration();
+        final DecisionTracer decisions = tracer;
+        if (decisions.isEnabled()) {
+            decisions.record(host, configuration, version);
+        }
+        return configuration;
+    }
+
+    /**
+     * Resolutions of an older configuration version are resolved again right away. Resolutions older than the refresh
+     * time of the cache settings are still used, while they are resolved again on the shared scheduler.
+     */
+    private HostResolution lookup(final ConfigurationSnapshot current, final String host) {
+        final long version = current.getVersion();
+        final long refreshAfter = TimeUnit.SECONDS.toNanos(cacheSettings.getRefreshAfterInSeconds());
+        return cache.getRefreshing(host, cached -> cached.isCurrent(version), cached -> cached.isFresh(refreshAfter),
+                key -> resolve(current, key), this::refresh);
+    }
+
+    private void refresh(final Runnable refresh) {
+        final SharedScheduler current = getScheduler();
+        if (current == null) {
+            throw new RejectedExecutionException("Filter destroyed");
+        }
+        current.execute(refresh);
+    }
 
-        if (configLoader.needReloading()) {
-            invalidateCaches();
+    /**
+     * @return resolution to cache or null if given host matches no configuration
+     */
+    private HostResolution resolve(final ConfigurationSnapshot current, final String host) {
+        final long version = current.getVersion();
+        if (negativeCache.contains(host, version)) {
+            return null;
+        }
+        final DecoratorConfiguration value = loadConfig(current, host);
+        if (value.invalid()) {
+            // keep unmatched hosts out of the resolution cache, so they cannot evict matched ones
+            negativeCache.add(host, version);
+            return null;
         }
-        final String host = getHost((HttpServletRequest) request);
+        return new HostResolution(value, version);
+    }
 
+    /**
+     * Initializes the configuration loader, by one thread at a time.
+     *
+     * @param wait false to return right away if another thread is initializing
+     * @return true if initialized
+     */
+    private boolean requestData(final boolean wait) {
+        if (initialized) {
+            return true;
+        }
+        if (wait) {
+            initLock.lock();
+        } else if (!initLock.tryLock()) {
+            return false;
+        }
         try {
-            return cache.get(host);
-        } catch (ExecutionException e) {
-            log.error("Error loading object:", e);
+            if (!initialized) {
+                initializeConfigManager();
+                if (initialized && snapshotFile != null) {
+                    configLoader.setSnapshotFile(snapshotFile);
+                }
+                if (initialized && virtualThreads) {
+                    configLoader.setVirtualThreads(true);
+                }
+            }
+            return initialized;
+        } finally {
+            initLock.unlock();
         }
-        return DecoratorConfiguration.INVALID;
     }
 
-    private void requestData() {
-        if (!initialized) {
-            initializeConfigManager();
+    /**
+     * Suspends an async supported request while the initial configuration loads, instead of blocking its thread until
+     * loaded. It is dispatched again once the configuration is loaded or after
+     * {@link DecoratorConst#INITIAL_LOAD_TIMEOUT_IN_SECONDS}, whichever comes first. The dispatch runs the whole filter
+     * chain again as an ASYNC dispatch, so every filter and servlet after this filter must support async and be mapped
+     * to ASYNC dispatches as well.
+     *
+     * @return true if suspended
+     */
+    private boolean suspendUntilLoaded(final ServletRequest request, final ServletResponse response) {
+        if (!request.isAsyncSupported() || request.getDispatcherType() != DispatcherType.REQUEST
+                || request.getAttribute(DecoratorConst.REQUEST_ATTRIBUTE_SUSPENDED) != null) {
+            return false;
         }
-        if (initialized && configLoader.needReloading()) {
-            configLoader.load();
-            invalidateCaches();
-            log.info("{}: data reloaded", this.getClass().getSimpleName());
+        if (!requestData(false) || snapshot.isRestored() || !configLoader.getSnapshot().isEmpty()) {
+            return false;
         }
+        final CompletableFuture<ConfigurationSnapshot> reload = configLoader.reloadAsync();
+        if (reload.isDone()) {
+            return false;
+        }
+        request.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_SUSPENDED, Boolean.TRUE);
+        // keep the request and response as passed to this filter, including the wrappers of earlier filters
+        final AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(TimeUnit.SECONDS.toMillis(DecoratorConst.INITIAL_LOAD_TIMEOUT_IN_SECONDS));
+        final AtomicBoolean resumed = new AtomicBoolean();
+        final Runnable resume = () -> {
+            if (resumed.compareAndSet(false, true)) {
+                async.dispatch();
+            }
+        };
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(final AsyncEvent event) {
+                resumed.set(true);
+            }
+
+            @Override
+            public void onTimeout(final AsyncEvent event) {
+                log.warn("{}: initial configuration not loaded in time", ConfigurableDecoratorFilter.this.getClass().getSimpleName());
+                resume.run();
+            }
+
+            @Override
+            public void onError(final AsyncEvent event) {
+                resumed.set(true);
+            }
+
+            @Override
+            public void onStartAsync(final AsyncEvent event) {
+            }
+        });
+        reload.whenComplete((loaded, e) -> resume.run());
+        return true;
     }
 
+    /**
+     * Initializes and loads the configuration in the background, instead of on the first requests. Enabled unless the
+     * {@link DecoratorConst#INIT_PARAM_WARMUP} init parameter is false.
+     */
+    private void startWarmup(final FilterConfig filterConfig) {
+        if (filterConfig == null) {
+            return;
+        }
+        if ("false".equalsIgnoreCase(filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_WARMUP))) {
+            return;
+        }
+        final String hosts = filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_WARMUP_HOSTS);
+        if (hosts != null) {
+            warmupHosts = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(hosts);
+        }
+        scheduleWarmup(0);
+    }
 
-    protected abstract void initializeConfigManager();
+    private synchronized void scheduleWarmup(final long delayInMillis) {
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            warmupTask = scheduler.schedule(this::warmup, delayInMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            warmupTask = null;
+            log.warn("{}: warm-up not started, loading on the first request: {}", getClass().getSimpleName(), e.getMessage());
+        }
+    }
 
+    /**
+     * One warm-up attempt, repeated until the configuration is loaded: services the loader depends on (HST
+     * container, CMS service registry) only become available some time after the filter is initialized. Attempts back
+     * off exponentially up to {@link DecoratorConst#WARMUP_MAX_INTERVAL_IN_MILLIS}, after
+     * {@link DecoratorConst#WARMUP_MAX_ATTEMPTS} the configuration is loaded on the first request instead.
+     * <p>
+     * Availability is polled rather than subscribed to: the HST container offers filters no availability callback,
+     * so the HST and CMS filters share this polling.
+     */
+    private void warmup() {
+        try {
+            if (!requestData(true)) {
+                retryWarmup();
+                return;
+            }
+            final ConfigurationSnapshot loaded = configLoader.load();
+            if (loaded.isEmpty()) {
+                retryWarmup();
+                return;
+            }
+            if (loaded != snapshot) {
+                snapshotChanged(loaded);
+            }
+            for (String host : warmupHosts) {
+                lookup(loaded, HostNormalizer.normalize(host));
+            }
+            log.info("{}: warmed up, version {}, {} host(s) resolved", this.getClass().getSimpleName(),
+                    loaded.getVersion(), warmupHosts.size());
+            markReady();
+            stopWarmup();
+        } catch (RuntimeException e) {
+            log.warn("{}: warm-up failed, retrying: {}", this.getClass().getSimpleName(), e.toString());
+            retryWarmup();
+        }
+    }
 
-    protected DecoratorConfiguration loadConfig(final String host) {
-        final Set<DecoratorConfiguration> rawData = configLoader.load();
-        for (DecoratorConfiguration value : rawData) {
-            final Pattern pattern = value.getHostPattern();
-            final Matcher matcher = pattern.matcher(host);
-            if (matcher.matches()) {
-                log.debug("Found host: {} in pattern: {}", host, pattern);
-                return value;
+    private synchronized void retryWarmup() {
+        if (warmupTask == null) {
+            // stopped meanwhile
+            return;
+        }
+        if (++warmupAttempts >= DecoratorConst.WARMUP_MAX_ATTEMPTS) {
+            warmupTask = null;
+            log.warn("{}: configuration not loaded after {} warm-up attempts, loading on the first request instead",
+                    this.getClass().getSimpleName(), warmupAttempts);
+            return;
+        }
+        scheduleWarmup(Math.min(DecoratorConst.WARMUP_INTERVAL_IN_MILLIS << Math.min(warmupAttempts - 1, 16),
+                DecoratorConst.WARMUP_MAX_INTERVAL_IN_MILLIS));
+    }
+
+    private synchronized void stopWarmup() {
+        if (warmupTask != null) {
+            warmupTask.cancel(false);
+            warmupTask = null;
+        }
+    }
+
+    private synchronized void markReady() {
+        if (ready) {
+            return;
+        }
+        ready = true;
+        if (servletContext != null) {
+            servletContext.setAttribute(DecoratorConst.CONTEXT_ATTRIBUTE_READY, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return true once the configuration is loaded and requests get decorated
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Restores the configuration written by an earlier run, see {@link DecoratorConst#INIT_PARAM_SNAPSHOT_FILE}. It is
+     * used until the configuration is loaded from the repository.
+     */
+    private void restoreSnapshot(final FilterConfig filterConfig) {
+        final String file = filterConfig == null ? null : filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_SNAPSHOT_FILE);
+        if (file == null || file.trim().isEmpty()) {
+            return;
+        }
+        snapshotFile = Paths.get(file.trim());
+        final ConfigurationSnapshot restored = SnapshotFile.read(snapshotFile);
+        if (restored == null) {
+            return;
+        }
+        updateCacheSettings(restored.getCacheSettings());
+        snapshot = restored;
+        log.info("{}: restored configuration of {} from {}", this.getClass().getSimpleName(), restored.getLoadDate(), snapshotFile);
+        markReady();
+    }
+
+    /**
+     * @param wait false to never wait for the initial load
+     * @return latest published configuration snapshot. Reloads run in the background, only the initial load is
+     * waited for (at most {@link DecoratorConst#INITIAL_LOAD_TIMEOUT_IN_SECONDS}), unless a restored configuration
+     * can be used meanwhile
+     */
+    private ConfigurationSnapshot currentSnapshot(final boolean wait) {
+        ConfigurationSnapshot loaded = configLoader.getSnapshot();
+        // changes schedule their own (debounced) reload, only trigger one if nothing is loaded or a reload failed:
+        if (configLoader.needReloading() && (loaded.isEmpty() || !configLoader.isReloadPending())) {
+            final CompletableFuture<ConfigurationSnapshot> reload = configLoader.reloadAsync();
+            if (wait && loaded.isEmpty() && !snapshot.isRestored()) {
+                loaded = awaitInitialLoad(reload);
             }
+        }
+        if (loaded.isEmpty() && snapshot.isRestored()) {
+            return snapshot;
+        }
+        if (loaded != snapshot) {
+            snapshotChanged(loaded);
+        }
+        return loaded;
+    }
 
+    private ConfigurationSnapshot awaitInitialLoad(final CompletableFuture<ConfigurationSnapshot> reload) {
+        try {
+            return reload.get(DecoratorConst.INITIAL_LOAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("{}: initial configuration not loaded: {}", this.getClass().getSimpleName(), e.toString());
         }
+        return configLoader.getSnapshot();
+    }
 
-        log.debug("Couldn't match host {} within current patterns", host);
-        // just return invalid object
-        return DecoratorConfiguration.INVALID;
+    /**
+     * NOTE: cached hosts are not invalidated here, entries of an older version are resolved again on their next lookup
+     */
+    private synchronized void snapshotChanged(final ConfigurationSnapshot loaded) {
+        if (loaded.getVersion() <= snapshot.getVersion()) {
+            return;
+        }
+        updateCacheSettings(loaded.getCacheSettings());
+        snapshot = loaded;
+        log.info("{}: data reloaded, version {}", this.getClass().getSimpleName(), loaded.getVersion());
     }
 
+
+    protected abstract void initializeConfigManager();
+
+
+    /**
+     * @deprecated matches against the current configuration snapshot, override
+     * {@link #loadConfig(ConfigurationSnapshot, String)} instead
+     */
+    @Deprecated
+    protected DecoratorConfiguration loadConfig(final String host) {
+        return loadConfig(currentSnapshot(true), host);
+    }
+
+    protected DecoratorConfiguration loadConfig(final ConfigurationSnapshot current, final String host) {
+        final DecoratorConfiguration value = current.getHostMatcher().match(host);
+        if (value.invalid()) {
+            log.debug("Couldn't match host {} within current patterns", host);
+        } else {
+            log.debug("Found host: {} in pattern: {}", host, value.getHostPattern());
+        }
+        return value;
+    }
+
+    /**
+     * @return normalized host of given request, according to the host header chain of the current configuration
+     */
     public String getHost(final HttpServletRequest request) {
-        final String hostHeader = request.getHeader(DecoratorConst.HEADER_X_FORWARDED_HOST);
-        if (Strings.isNullOrEmpty(hostHeader)) {
-            final String remoteHost = request.getRemoteHost();
-            log.debug("Missing header {}, using: {}", DecoratorConst.HEADER_X_FORWARDED_HOST, remoteHost);
-            return remoteHost;
+        final HostExtractor extractor = configLoader == null ? HostExtractor.DEFAULT : configLoader.getSnapshot().getHostExtractor();
+        final String host = HostNormalizer.normalize(extractor.extract(request));
+        log.trace("Using host: {}", host);
+        return host;
+    }
+
+    /**
+     * Replaces the resolution cache if the cache settings of the module configuration have changed, its counters
+     * continue from those of the replaced cache.
+     */
+    private void updateCacheSettings(final CacheSettings settings) {
+        if (!settings.equals(cacheSettings)) {
+            log.info("Using resolution cache: {}", settings);
+            cacheSettings = settings;
+            cache = settings.createCache();
+            negativeCache = settings.createNegativeCache();
+            cacheCounters = new CacheCounters(cache, negativeCache, cacheCounters);
+        }
+    }
+
+    /**
+     * @return host resolution cache, e.g. for inspecting its hit, miss and eviction counters
+     */
+    public ResolutionCache<HostResolution> getCache() {
+        return cache;
+    }
+
+    /**
+     * @return cache of unmatched hosts, e.g. for inspecting the number of rejected hosts
+     */
+    public NegativeHostCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * @return counters of the resolution caches, including those of replaced caches, null before initialization
+     */
+    CacheCounters getCacheCounters() {
+        return cacheCounters;
+    }
+
+    public DecoratorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return sampled trace of host resolutions, see {@link DecoratorConst#INIT_PARAM_TRACE_SAMPLE_RATE}
+     */
+    public DecisionTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * @return name of the MBean of this filter or null if not registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    private void initTracer(final FilterConfig filterConfig) {
+        if (filterConfig == null) {
+            return;
+        }
+        final int capacity = parseInitParameter(filterConfig, DecoratorConst.INIT_PARAM_TRACE_CAPACITY, DecoratorConst.TRACE_CAPACITY);
+        if (capacity != tracer.getCapacity()) {
+            tracer = new DecisionTracer(capacity);
+        }
+        tracer.setSampleRate(parseInitParameter(filterConfig, DecoratorConst.INIT_PARAM_TRACE_SAMPLE_RATE, 0));
+    }
+
+    private void initThreading(final FilterConfig filterConfig) {
+        if (filterConfig == null) {
+            return;
+        }
+        asyncInitialLoad = "true".equalsIgnoreCase(filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_ASYNC_INITIAL_LOAD));
+        virtualThreads = "true".equalsIgnoreCase(filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_VIRTUAL_THREADS));
+        if (virtualThreads && !DaemonThreads.isVirtualSupported()) {
+            log.info("{}: virtual threads not supported by this JVM, using platform threads", getClass().getSimpleName());
         }
-        log.debug("Found header: {} -> {}", DecoratorConst.HEADER_X_FORWARDED_HOST, hostHeader);
-        return hostHeader;
+    }
 
+    private static int parseInitParameter(final FilterConfig filterConfig, final String name, final int defaultValue) {
+        final String value = filterConfig.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for init parameter {}: {}, using {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Registers a {@link DecoratorFilterStatsMBean} per filter instance, named after the web application context path
+     * and the filter name.
+     */
+    private void registerMBean(final FilterConfig filterConfig) {
+        final String filterName = filterConfig == null || filterConfig.getFilterName() == null
+                ? getClass().getSimpleName() : filterConfig.getFilterName();
+        final String context = filterConfig == null || filterConfig.getServletContext() == null
+                ? "" : filterConfig.getServletContext().getContextPath();
+        try {
+            final ObjectName name = new ObjectName(DecoratorFilterStats.DOMAIN + ":type=DecoratorFilter,context="
+                    + ObjectName.quote(context) + ",name=" + ObjectName.quote(filterName));
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                // e.g. left behind by a redeployed web application
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new DecoratorFilterStats(this), name);
+            objectName = name;
+        } catch (JMException | SecurityException e) {
+            log.warn("{}: cannot register MBean: {}", filterName, e.toString());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException | SecurityException e) {
+            log.warn("Cannot unregister MBean {}: {}", objectName, e.toString());
+        }
+        objectName = null;
+    }
+
+    private synchronized void releaseScheduler() {
+        if (scheduler != null) {
+            scheduler.release();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return scheduler running the background work of this filter, null once destroyed
+     */
+    public synchronized SharedScheduler getScheduler() {
+        return scheduler;
     }
 
     private void invalidateCaches() {
         log.debug("Invalidating servlet decorator cache");
-        cache.invalidateAll();
+        // not initialized if init failed or was never called
+        final ResolutionCache<HostResolution> resolutions = cache;
+        if (resolutions != null) {
+            resolutions.invalidateAll();
+        }
+        final NegativeHostCache unmatched = negativeCache;
+        if (unmatched != null) {
+            unmatched.clear();
+        }
     }
 
     @Override
     public void destroy() {
+        stopWarmup();
+        releaseScheduler();
+        if (servletContext != null) {
+            servletContext.removeAttribute(DecoratorConst.CONTEXT_ATTRIBUTE_READY);
+        }
+        ready = false;
+        unregisterMBean();
         invalidateCaches();
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.onehippo.forge.servlet.decorators.common.DecoratorMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the metrics of decorator filters to a Micrometer registry. Micrometer is an optional dependency, this class
+ * is only usable if micrometer-core is on the classpath.
+ * <p>
+ * Without arguments all filters registered in the platform MBean server at bind time are bound, tagged with their
+ * context and filter name. Filters of this web application are read directly, those of others through their MBean.
+ * <p>
+ * The resolution latency histogram is bound as cumulative counters {@code servlet.decorators.resolution.latency.micros}
+ * tagged with their inclusive upper bound {@code le} (in microseconds, the last one {@code +Inf}), like a Prometheus
+ * histogram.
+ */
+public class DecoratorFilterMetricsBinder implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(DecoratorFilterMetricsBinder.class);
+    private static final String PREFIX = "servlet.decorators.";
+
+    private final DecoratorFilterStatsMBean stats;
+    private final Iterable<Tag> tags;
+
+    public DecoratorFilterMetricsBinder() {
+        this(null, Tags.empty());
+    }
+
+    public DecoratorFilterMetricsBinder(final DecoratorFilterStatsMBean stats, final Iterable<Tag> tags) {
+        this.stats = stats;
+        this.tags = tags;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        if (stats != null) {
+            bind(registry, stats, tags);
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName(DecoratorFilterStats.DOMAIN + ":type=DecoratorFilter,*"), null)) {
+                final Tags filterTags = Tags.of(tags)
+                        .and("context", ObjectName.unquote(name.getKeyProperty("context")))
+                        .and("filter", ObjectName.unquote(name.getKeyProperty("name")));
+                final DecoratorFilterStats local = DecoratorFilterStats.registered(name);
+                bind(registry, local != null ? local : JMX.newMBeanProxy(server, name, DecoratorFilterStatsMBean.class), filterTags);
+            }
+        } catch (MalformedObjectNameException e) {
+            log.error("Cannot query decorator filters", e);
+        }
+    }
+
+    private static void bind(final MeterRegistry registry, final DecoratorFilterStatsMBean stats, final Iterable<Tag> tags) {
+        FunctionCounter.builder(PREFIX + "requests", stats, DecoratorFilterStatsMBean::getDecoratedCount)
+                .tags(Tags.of(tags).and("outcome", "decorated"))
+                .description("Requests decorated")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "requests", stats, s -> s.getPassedThroughCount() - s.getUnmatchedCount())
+                .tags(Tags.of(tags).and("outcome", "disabled"))
+                .description("Requests passed through because of a disabled configuration or uninitialized filter")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "requests", stats, DecoratorFilterStatsMBean::getUnmatchedCount)
+                .tags(Tags.of(tags).and("outcome", "unmatched"))
+                .description("Requests passed through because their host matched no configuration")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "cache.hits", stats, DecoratorFilterStatsMBean::getCacheHitCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "cache.misses", stats, DecoratorFilterStatsMBean::getCacheMissCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "cache.refreshes", stats, DecoratorFilterStatsMBean::getCacheRefreshCount)
+                .tags(tags).register(registry);
+        Gauge.builder(PREFIX + "cache.hit.ratio", stats, DecoratorFilterStatsMBean::getCacheHitRatio)
+                .tags(tags).register(registry);
+        Gauge.builder(PREFIX + "cache.size", stats, DecoratorFilterStatsMBean::getCacheSize)
+                .tags(tags).register(registry);
+
+        final long[] buckets = DecoratorMetrics.LATENCY_BUCKETS_IN_MICROS;
+        for (int i = 0; i <= buckets.length; i++) {
+            final int bucket = i;
+            final String bound = i < buckets.length ? String.valueOf(buckets[i]) : "+Inf";
+            final FunctionCounter.Builder<?> latency = stats instanceof DecoratorFilterStats
+                    ? FunctionCounter.builder(PREFIX + "resolution.latency.micros", ((DecoratorFilterStats) stats).getMetrics(),
+                            m -> m.getCumulativeLatencyCount(bucket))
+                    : FunctionCounter.builder(PREFIX + "resolution.latency.micros", stats,
+                            s -> cumulative(s.getLatencyHistogram(), bucket));
+            latency.tags(Tags.of(tags).and("le", bound))
+                    .description("Host resolutions taking at most le microseconds")
+                    .register(registry);
+        }
+
+        FunctionCounter.builder(PREFIX + "reloads", stats, DecoratorFilterStatsMBean::getReloadCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "reloads.failed", stats, DecoratorFilterStatsMBean::getFailedReloadCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "reloads.skipped", stats, DecoratorFilterStatsMBean::getSkippedReloadCount)
+                .tags(tags).description("Reloads skipped because the configuration checksum was unchanged").register(registry);
+        FunctionCounter.builder(PREFIX + "invalidations", stats, DecoratorFilterStatsMBean::getInvalidationCount)
+                .tags(tags).description("Configuration change events received").register(registry);
+        FunctionCounter.builder(PREFIX + "invalidations.coalesced", stats, DecoratorFilterStatsMBean::getCoalescedInvalidationCount)
+                .tags(tags).description("Configuration change events merged into an already scheduled reload").register(registry);
+        FunctionCounter.builder(PREFIX + "reload.batches", stats, DecoratorFilterStatsMBean::getReloadBatchCount)
+                .tags(tags).description("Reloads triggered by (batches of) configuration change events").register(registry);
+        TimeGauge.builder(PREFIX + "reload.duration.last", stats, TimeUnit.MILLISECONDS,
+                DecoratorFilterStatsMBean::getLastReloadDurationInMillis)
+                .tags(tags).register(registry);
+        TimeGauge.builder(PREFIX + "config.age", stats, TimeUnit.MILLISECONDS, s -> {
+            final Date loaded = s.getLastLoadDate();
+            return loaded == null ? Double.NaN : System.currentTimeMillis() - loaded.getTime();
+        }).tags(tags).description("Time since the configuration was last loaded").register(registry);
+        Gauge.builder(PREFIX + "patterns.active", stats, DecoratorFilterStatsMBean::getActivePatternCount)
+                .tags(tags).register(registry);
+
+        Gauge.builder(PREFIX + "scheduler.queue.size", stats, DecoratorFilterStatsMBean::getSchedulerQueueSize)
+                .tags(tags).description("Background tasks waiting to run, including delayed tasks").register(registry);
+        Gauge.builder(PREFIX + "scheduler.active", stats, DecoratorFilterStatsMBean::getSchedulerActiveCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "scheduler.tasks", stats, DecoratorFilterStatsMBean::getSchedulerTaskCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "scheduler.tasks.failed", stats, DecoratorFilterStatsMBean::getSchedulerFailedTaskCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + "scheduler.tasks.rejected", stats, DecoratorFilterStatsMBean::getSchedulerRejectedTaskCount)
+                .tags(tags).register(registry);
+        TimeGauge.builder(PREFIX + "scheduler.latency.average", stats, TimeUnit.MICROSECONDS,
+                DecoratorFilterStatsMBean::getSchedulerAverageLatencyInMicros)
+                .tags(tags).description("Average time between the moment background tasks were due and started").register(registry);
+        TimeGauge.builder(PREFIX + "scheduler.latency.max", stats, TimeUnit.MICROSECONDS,
+                DecoratorFilterStatsMBean::getSchedulerMaxLatencyInMicros)
+                .tags(tags).register(registry);
+    }
+
+    private static long cumulative(final long[] histogram, final int bucket) {
+        long count = 0;
+        for (int i = 0; i <= bucket && i < histogram.length; i++) {
+            count += histogram[i];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators;
+
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
+import org.onehippo.forge.servlet.decorators.common.DecoratorMetrics;
+import org.onehippo.forge.servlet.decorators.common.ResolutionCache;
+import org.onehippo.forge.servlet.decorators.common.SharedScheduler;
+
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the metrics of a filter, its resolution caches and its configuration loader. Values of the loader are 0 until
+ * the filter has been initialized.
+ */
+public class DecoratorFilterStats implements DecoratorFilterStatsMBean, MBeanRegistration {
+
+    public static final String DOMAIN = "org.onehippo.forge.servlet.decorators";
+
+    // registered instances of this class loader, so they are read without going through the MBean server
+    private static final Map<ObjectName, DecoratorFilterStats> registered = new ConcurrentHashMap<>();
+
+    private final ConfigurableDecoratorFilter filter;
+    private ObjectName objectName;
+
+    public DecoratorFilterStats(final ConfigurableDecoratorFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean isReady() {
+        return filter.isReady();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return metrics().getRequestCount();
+    }
+
+    @Override
+    public long getDecoratedCount() {
+        return metrics().getDecoratedCount();
+    }
+
+    @Override
+    public long getPassedThroughCount() {
+        return metrics().getPassedThroughCount();
+    }
+
+    @Override
+    public long getUnmatchedCount() {
+        return metrics().getUnmatchedCount();
+    }
+
+    @Override
+    public double getUnmatchedRate() {
+        return metrics().getUnmatchedRate();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        final CacheCounters counters = filter.getCacheCounters();
+        return counters == null ? 0 : counters.getHitCount();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        final CacheCounters counters = filter.getCacheCounters();
+        return counters == null ? 0 : counters.getMissCount();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        final CacheCounters counters = filter.getCacheCounters();
+        if (counters == null) {
+            return 0;
+        }
+        final long hits = counters.getHitCount();
+        final long lookups = hits + counters.getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getCacheSize() {
+        final ResolutionCache<?> cache = filter.getCache();
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public long getCacheEvictionCount() {
+        final CacheCounters counters = filter.getCacheCounters();
+        return counters == null ? 0 : counters.getEvictionCount();
+    }
+
+    @Override
+    public long getCacheRefreshCount() {
+        final CacheCounters counters = filter.getCacheCounters();
+        return counters == null ? 0 : counters.getRefreshCount();
+    }
+
+    @Override
+    public long getNegativeCacheRejectedCount() {
+        final CacheCounters counters = filter.getCacheCounters();
+        return counters == null ? 0 : counters.getNegativeRejectedCount();
+    }
+
+    @Override
+    public long[] getLatencyBucketsInMicros() {
+        return DecoratorMetrics.LATENCY_BUCKETS_IN_MICROS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        return metrics().getLatencyHistogram();
+    }
+
+    @Override
+    public double getAverageLatencyInMicros() {
+        return metrics().getAverageLatencyInMicros();
+    }
+
+    @Override
+    public long getReloadCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getReloadCount();
+    }
+
+    @Override
+    public long getFailedReloadCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getFailedReloadCount();
+    }
+
+    @Override
+    public long getSkippedReloadCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getSkippedReloadCount();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getInvalidationCount();
+    }
+
+    @Override
+    public long getCoalescedInvalidationCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getCoalescedInvalidationCount();
+    }
+
+    @Override
+    public long getReloadBatchCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getReloadBatchCount();
+    }
+
+    @Override
+    public long getLastReloadDurationInMillis() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getLastReloadDurationInMillis();
+    }
+
+    @Override
+    public long getTotalReloadDurationInMillis() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getTotalReloadDurationInMillis();
+    }
+
+    @Override
+    public Date getLastLoadDate() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null || loader.getSnapshot().isEmpty() ? null : loader.getLastLoadDate();
+    }
+
+    @Override
+    public long getConfigurationVersion() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getSnapshot().getVersion();
+    }
+
+    @Override
+    public int getActivePatternCount() {
+        final DecoratorConfigurationLoader loader = filter.configLoader;
+        return loader == null ? 0 : loader.getSnapshot().getHostMatcher().size();
+    }
+
+    @Override
+    public int getSchedulerQueueSize() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getQueueSize();
+    }
+
+    @Override
+    public int getSchedulerActiveCount() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getActiveCount();
+    }
+
+    @Override
+    public long getSchedulerTaskCount() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getTaskCount();
+    }
+
+    @Override
+    public long getSchedulerFailedTaskCount() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getFailedTaskCount();
+    }
+
+    @Override
+    public long getSchedulerRejectedTaskCount() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getRejectedTaskCount();
+    }
+
+    @Override
+    public double getSchedulerAverageLatencyInMicros() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getAverageLatencyInMicros();
+    }
+
+    @Override
+    public long getSchedulerMaxLatencyInMicros() {
+        final SharedScheduler scheduler = filter.getScheduler();
+        return scheduler == null ? 0 : scheduler.getMaxLatencyInMicros();
+    }
+
+    @Override
+    public int getTraceSampleRate() {
+        return filter.getTracer().getSampleRate();
+    }
+
+    @Override
+    public void setTraceSampleRate(final int sampleRate) {
+        filter.getTracer().setSampleRate(sampleRate);
+    }
+
+    @Override
+    public String[] dumpTrace() {
+        return filter.getTracer().getEntries().stream().map(Object::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public void clearTrace() {
+        filter.getTracer().clear();
+    }
+
+    private DecoratorMetrics metrics() {
+        return filter.getMetrics();
+    }
+
+    @Override
+    public ObjectName preRegister(final MBeanServer server, final ObjectName name) {
+        objectName = name;
+        return name;
+    }
+
+    @Override
+    public void postRegister(final Boolean registrationDone) {
+        if (Boolean.TRUE.equals(registrationDone)) {
+            registered.put(objectName, this);
+        }
+    }
+
+    @Override
+    public void preDeregister() {
+    }
+
+    @Override
+    public void postDeregister() {
+        registered.remove(objectName, this);
+    }
+
+    /**
+     * @return the registered stats of given name if registered by this class loader, null otherwise (e.g. a filter of
+     * another web application)
+     */
+    static DecoratorFilterStats registered(final ObjectName name) {
+        return registered.get(name);
+    }
+
+    DecoratorMetrics getMetrics() {
+        return metrics();
+    }
+}
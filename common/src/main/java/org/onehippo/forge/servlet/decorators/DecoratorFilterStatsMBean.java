@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators;
+
+import java.util.Date;
+
+/**
+ * Metrics of a {@link ConfigurableDecoratorFilter}, registered per filter instance.
+ */
+public interface DecoratorFilterStatsMBean {
+
+    /**
+     * @return true once the configuration is loaded and requests get decorated
+     */
+    boolean isReady();
+
+    long getRequestCount();
+
+    long getDecoratedCount();
+
+    long getPassedThroughCount();
+
+    long getUnmatchedCount();
+
+    double getUnmatchedRate();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    double getCacheHitRatio();
+
+    long getCacheSize();
+
+    long getCacheEvictionCount();
+
+    /**
+     * @return number of cached hosts resolved again in the background, because of a configuration change or age
+     */
+    long getCacheRefreshCount();
+
+    long getNegativeCacheRejectedCount();
+
+    /**
+     * @return upper bounds of the latency histogram buckets, the last bucket of {@link #getLatencyHistogram()} counts
+     * slower resolutions
+     */
+    long[] getLatencyBucketsInMicros();
+
+    long[] getLatencyHistogram();
+
+    double getAverageLatencyInMicros();
+
+    long getReloadCount();
+
+    long getFailedReloadCount();
+
+    long getSkippedReloadCount();
+
+    /**
+     * @return number of invalidations (e.g. JCR events) received by the configuration loader
+     */
+    long getInvalidationCount();
+
+    /**
+     * @return number of invalidations merged into a reload already scheduled by an earlier invalidation
+     */
+    long getCoalescedInvalidationCount();
+
+    /**
+     * @return number of reloads triggered by (batches of) invalidations
+     */
+    long getReloadBatchCount();
+
+    long getLastReloadDurationInMillis();
+
+    long getTotalReloadDurationInMillis();
+
+    Date getLastLoadDate();
+
+    long getConfigurationVersion();
+
+    int getActivePatternCount();
+
+    /**
+     * @return number of tasks waiting in the shared background scheduler, including delayed tasks
+     */
+    int getSchedulerQueueSize();
+
+    int getSchedulerActiveCount();
+
+    long getSchedulerTaskCount();
+
+    long getSchedulerFailedTaskCount();
+
+    long getSchedulerRejectedTaskCount();
+
+    /**
+     * @return average time between the moment background tasks were due and started running
+     */
+    double getSchedulerAverageLatencyInMicros();
+
+    long getSchedulerMaxLatencyInMicros();
+
+    /**
+     * @return trace one in every given number of requests, 0 if tracing is disabled
+     */
+    int getTraceSampleRate();
+
+    void setTraceSampleRate(int sampleRate);
+
+    /**
+     * @return traced decisions, oldest first
+     */
+    String[] dumpTrace();
+
+    void clearTrace();
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators;
+
+import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
+import org.onehippo.forge.servlet.decorators.common.DecoratorConst;
+import org.onehippo.forge.servlet.decorators.common.PropertiesConfigurationSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.FilterConfig;
+
+/**
+ * Decorate filter for web applications without a repository, reading its configuration from the properties file
+ * (or {@code classpath:} resource) given by the {@link DecoratorConst#INIT_PARAM_CONFIGURATION_FILE} init parameter.
+ */
+public class FileDecoratorFilter extends ConfigurableDecoratorFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDecoratorFilter.class);
+
+    private String location;
+
+    @Override
+    public void init(final FilterConfig filterConfig) {
+        location = filterConfig == null ? null : filterConfig.getInitParameter(DecoratorConst.INIT_PARAM_CONFIGURATION_FILE);
+        if (location == null || location.trim().isEmpty()) {
+            log.error("Init parameter {} is missing, requests will not be decorated", DecoratorConst.INIT_PARAM_CONFIGURATION_FILE);
+            location = null;
+        } else {
+            location = location.trim();
+        }
+        super.init(filterConfig);
+    }
+
+    @Override
+    protected void initializeConfigManager() {
+        if (location == null) {
+            return;
+        }
+        final DecoratorConfigurationLoader loader = new DecoratorConfigurationLoader() {
+        };
+        loader.setConfigurationSource(new PropertiesConfigurationSource(location));
+        configLoader = loader;
+        initialized = true;
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        // the loader is owned by this filter
+        if (configLoader != null) {
+            configLoader.shutdown();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host resolution cache settings, read from the module configuration node.
+ */
+public final class CacheSettings {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSettings.class);
+
+    public static final CacheSettings DEFAULT = new CacheSettings(Policy.TINYLFU, DecoratorConst.CACHE_MAX_SIZE,
+            TimeUnit.DAYS.toSeconds(DecoratorConst.CACHE_EXPIRES_IN_DAYS), DecoratorConst.NEGATIVE_CACHE_MAX_SIZE);
+
+    public enum Policy {
+        /**
+         * frequency based admission, see {@link TinyLfuResolutionCache}
+         */
+        TINYLFU,
+        /**
+         * least recently used, see {@link GuavaResolutionCache}
+         */
+        LRU
+    }
+
+    private final Policy policy;
+    private final long maxSize;
+    private final long expiresInSeconds;
+    private final long negativeMaxSize;
+    private final long refreshAfterInSeconds;
+
+    public CacheSettings(final Policy policy, final long maxSize, final long expiresInSeconds, final long negativeMaxSize) {
+        this(policy, maxSize, expiresInSeconds, negativeMaxSize, 0);
+    }
+
+    /**
+     * @param refreshAfterInSeconds age after which a cached host is resolved again in the background on its next
+     *                              lookup, 0 for half the expiry time. At most the expiry time.
+     */
+    public CacheSettings(final Policy policy, final long maxSize, final long expiresInSeconds, final long negativeMaxSize,
+                         final long refreshAfterInSeconds) {
+        this.policy = policy;
+        this.maxSize = Math.max(1, maxSize);
+        this.expiresInSeconds = Math.max(1, expiresInSeconds);
+        this.negativeMaxSize = Math.max(0, negativeMaxSize);
+        this.refreshAfterInSeconds = refreshAfterInSeconds <= 0
+                ? Math.max(1, this.expiresInSeconds / 2) : Math.min(refreshAfterInSeconds, this.expiresInSeconds);
+    }
+
+    public static Policy parsePolicy(final String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return DEFAULT.policy;
+        }
+        try {
+            return Policy.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown cache policy: {}, using: {}", value, DEFAULT.policy);
+            return DEFAULT.policy;
+        }
+    }
+
+    public <V> ResolutionCache<V> createCache() {
+        if (policy == Policy.LRU) {
+            return new GuavaResolutionCache<>(maxSize, expiresInSeconds);
+        }
+        return new TinyLfuResolutionCache<>(maxSize, expiresInSeconds);
+    }
+
+    public NegativeHostCache createNegativeCache() {
+        return new NegativeHostCache(negativeMaxSize);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getExpiresInSeconds() {
+        return expiresInSeconds;
+    }
+
+    public long getNegativeMaxSize() {
+        return negativeMaxSize;
+    }
+
+    public long getRefreshAfterInSeconds() {
+        return refreshAfterInSeconds;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final CacheSettings that = (CacheSettings) o;
+        return maxSize == that.maxSize && expiresInSeconds == that.expiresInSeconds
+                && negativeMaxSize == that.negativeMaxSize && refreshAfterInSeconds == that.refreshAfterInSeconds
+                && policy == that.policy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(policy, maxSize, expiresInSeconds, negativeMaxSize, refreshAfterInSeconds);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheSettings{" +
+                "policy=" + policy +
+                ", maxSize=" + maxSize +
+                ", expiresInSeconds=" + expiresInSeconds +
+                ", negativeMaxSize=" + negativeMaxSize +
+                ", refreshAfterInSeconds=" + refreshAfterInSeconds +
+                '}';
+    }
+}
@@ -26,37 +26,31 @@ public abstract class CommonUndecorateFilter implements Filter {
 
     private static final Logger log = LoggerFactory.getLogger(CommonUndecorateFilter.class);
 
+    /**
+     * Finds the decorated request through {@link DecoratorConst#REQUEST_ATTRIBUTE_DECORATED}, so other wrappers
+     * (e.g. spring security wraps requests three levels deep) don't need to be walked.
+     */
     @Override
     public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
-        if (request instanceof HippoDecoratedServletRequest) {
-            log.debug("Un-decorating request");
-            final HippoDecoratedServletRequest decoratedServletRequest = (HippoDecoratedServletRequest) request;
-            final ServletRequest originalRequest = decoratedServletRequest.getRequest();
-            chain.doFilter(originalRequest, response);
-        } else if (request instanceof ServletRequestWrapper) {
-            // wrapped into someone else wrapper e.g spring security wraps request three levels deep:
-            unwrapDeep(request, (ServletRequestWrapper)request, response, chain);
-        } else {
+        final Object registered = request.getAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED);
+        if (!(registered instanceof HippoDecoratedServletRequest)) {
             chain.doFilter(request, response);
-        }
-    }
-
-    private  void unwrapDeep(final ServletRequest original, final ServletRequestWrapper request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
-        if (request instanceof HippoDecoratedServletRequest) {
-            final HippoDecoratedServletRequest decoratedServletRequest = (HippoDecoratedServletRequest) request;
-            // reset our request
-            log.debug("Un-decorating request: resetting original");
-            decoratedServletRequest.setServeOriginal(true);
-            chain.doFilter(original, response);
             return;
         }
-        final ServletRequest wrappedRequest = request.getRequest();
-        if (wrappedRequest instanceof ServletRequestWrapper) {
-            unwrapDeep(original, (ServletRequestWrapper) wrappedRequest, response, chain);
+        final HippoDecoratedServletRequest decorated = (HippoDecoratedServletRequest) registered;
+        if (request == decorated) {
+            log.trace("Un-decorating request");
+            chain.doFilter(decorated.getRequest(), response);
             return;
         }
-        chain.doFilter(original, response);
-
+        // wrapped into someone else wrapper, serve the original values until the chain (or async processing) ends:
+        log.trace("Un-decorating request: serving original");
+        decorated.pushOriginal();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestScope.end(request, decorated::popOriginal);
+        }
     }
 
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.hippoecm.repository.util.JcrUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Version stamp of the decorator configuration, stored by the CMS module on a runtime node (see
+ * {@link DecoratorConst#CHECKSUM_LOCATION}) so other cluster nodes can tell whether the configuration changed by
+ * reading one property. It is kept out of the bootstrapped module configuration, so it doesn't show up as a
+ * configuration change (e.g. in an export).
+ */
+public final class ConfigurationChecksum {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigurationChecksum.class);
+
+    private static final String NT_UNSTRUCTURED = "nt:unstructured";
+
+    private ConfigurationChecksum() {
+    }
+
+    /**
+     * @return checksum of the properties of given configuration node and its child nodes (in node order). Only
+     * properties without namespace prefix count, except for the checksum itself.
+     */
+    public static String compute(final Node node) throws RepositoryException {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hashProperties(node, hasher);
+        final NodeIterator nodes = node.getNodes();
+        while (nodes.hasNext()) {
+            final Node child = nodes.nextNode();
+            hasher.putString("/" + child.getName(), StandardCharsets.UTF_8).putByte((byte) 0);
+            hashProperties(child, hasher);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Stores the checksum of the configuration node at given location if it changed. The session is refreshed first
+     * (discarding its pending changes), so a checksum written meanwhile by another cluster node is seen and not
+     * written again.
+     *
+     * @return true if the checksum was written
+     */
+    public static boolean update(final Session session, final String configurationLocation) throws RepositoryException {
+        session.refresh(false);
+        final String checksum = compute(session.getNode(configurationLocation));
+        if (checksum.equals(read(session, configurationLocation))) {
+            return false;
+        }
+        final Node stamp = getOrAddStampNode(session);
+        stamp.setProperty(DecoratorConst.CONFIG_CHECKSUM, checksum);
+        stamp.setProperty(DecoratorConst.CONFIG_CHECKSUM_LOCATION, configurationLocation);
+        session.save();
+        log.info("Updated decorator configuration checksum: {}", checksum);
+        return true;
+    }
+
+    /**
+     * @return stored checksum of the configuration at given location or null if none
+     */
+    public static String read(final Session session, final String configurationLocation) throws RepositoryException {
+        if (!session.nodeExists(DecoratorConst.CHECKSUM_LOCATION)) {
+            return null;
+        }
+        final Node stamp = session.getNode(DecoratorConst.CHECKSUM_LOCATION);
+        if (!configurationLocation.equals(JcrUtils.getStringProperty(stamp, DecoratorConst.CONFIG_CHECKSUM_LOCATION, null))) {
+            return null;
+        }
+        return JcrUtils.getStringProperty(stamp, DecoratorConst.CONFIG_CHECKSUM, null);
+    }
+
+    private static Node getOrAddStampNode(final Session session) throws RepositoryException {
+        if (session.nodeExists(DecoratorConst.CHECKSUM_LOCATION)) {
+            return session.getNode(DecoratorConst.CHECKSUM_LOCATION);
+        }
+        final int slash = DecoratorConst.CHECKSUM_LOCATION.lastIndexOf('/');
+        return session.getNode(DecoratorConst.CHECKSUM_LOCATION.substring(0, slash))
+                .addNode(DecoratorConst.CHECKSUM_LOCATION.substring(slash + 1), NT_UNSTRUCTURED);
+    }
+
+    private static void hashProperties(final Node node, final Hasher hasher) throws RepositoryException {
+        // sorted, property iteration order is not guaranteed:
+        final Map<String, Property> properties = new TreeMap<>();
+        final PropertyIterator iterator = node.getProperties();
+        while (iterator.hasNext()) {
+            final Property property = iterator.nextProperty();
+            final String name = property.getName();
+            if (name.indexOf(':') < 0 && !DecoratorConst.CONFIG_CHECKSUM.equals(name)) {
+                properties.put(name, property);
+            }
+        }
+        for (Map.Entry<String, Property> entry : properties.entrySet()) {
+            hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putByte((byte) 0);
+            final Property property = entry.getValue();
+            if (property.isMultiple()) {
+                final Value[] values = property.getValues();
+                hasher.putInt(values.length);
+                for (Value value : values) {
+                    hasher.putString(value.getString(), StandardCharsets.UTF_8).putByte((byte) 0);
+                }
+            } else {
+                hasher.putString(property.getString(), StandardCharsets.UTF_8).putByte((byte) 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration as read by a {@link ConfigurationSource}, the same settings as stored on the module configuration
+ * node and its child nodes.
+ */
+public final class ConfigurationData {
+
+    private final Map<String, Collection<DecoratorConfiguration>> nodeConfigurations;
+    private final CacheSettings cacheSettings;
+    private final List<String> hostHeaders;
+    private final Long reloadDelayInMillis;
+
+    /**
+     * @param nodeConfigurations  configurations per configuration name, in matching priority order
+     * @param reloadDelayInMillis reload delay or null to keep the current one
+     */
+    public ConfigurationData(final Map<String, ? extends Collection<DecoratorConfiguration>> nodeConfigurations,
+                             final CacheSettings cacheSettings, final List<String> hostHeaders, final Long reloadDelayInMillis) {
+        this.nodeConfigurations = ImmutableMap.copyOf(nodeConfigurations);
+        this.cacheSettings = cacheSettings;
+        this.hostHeaders = ImmutableList.copyOf(hostHeaders);
+        this.reloadDelayInMillis = reloadDelayInMillis;
+    }
+
+    public Map<String, Collection<DecoratorConfiguration>> getNodeConfigurations() {
+        return nodeConfigurations;
+    }
+
+    public CacheSettings getCacheSettings() {
+        return cacheSettings;
+    }
+
+    public List<String> getHostHeaders() {
+        return hostHeaders;
+    }
+
+    public Long getReloadDelayInMillis() {
+        return reloadDelayInMillis;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, versioned result of a configuration load. A new snapshot is built completely before it is published,
+ * so readers either see the previous or the new configuration, never a partial one.
+ */
+public final class ConfigurationSnapshot {
+
+    public static final ConfigurationSnapshot EMPTY = new ConfigurationSnapshot(0, ImmutableMap.of(), CacheSettings.DEFAULT, ImmutableList.of(), new Date(0));
+
+    /**
+     * Version of a snapshot restored from a {@link SnapshotFile}, lower than any version published by a loader
+     */
+    public static final long RESTORED_VERSION = -1;
+
+    private final long version;
+    private final Map<String, List<DecoratorConfiguration>> nodeConfigurations;
+    private final List<DecoratorConfiguration> configurations;
+    private final HostMatcher hostMatcher;
+    private final CacheSettings cacheSettings;
+    private final List<String> hostHeaders;
+    private final HostExtractor hostExtractor;
+    private final Date loadDate;
+
+    /**
+     * @param nodeConfigurations configurations per configuration node name, in node order
+     * @param hostHeaders        configured host header chain, empty to derive it from the configurations
+     */
+    public ConfigurationSnapshot(final long version, final Map<String, ? extends Collection<DecoratorConfiguration>> nodeConfigurations,
+                                 final CacheSettings cacheSettings, final List<String> hostHeaders, final Date loadDate) {
+        this.version = version;
+        final ImmutableMap.Builder<String, List<DecoratorConfiguration>> nodes = ImmutableMap.builder();
+        final ImmutableList.Builder<DecoratorConfiguration> all = ImmutableList.builder();
+        for (Map.Entry<String, ? extends Collection<DecoratorConfiguration>> entry : nodeConfigurations.entrySet()) {
+            nodes.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+            all.addAll(entry.getValue());
+        }
+        this.nodeConfigurations = nodes.build();
+        this.configurations = all.build();
+        this.hostMatcher = HostMatcher.compile(this.configurations);
+        this.cacheSettings = cacheSettings;
+        this.hostHeaders = ImmutableList.copyOf(hostHeaders);
+        this.hostExtractor = HostExtractor.create(this.hostHeaders, this.configurations);
+        this.loadDate = new Date(loadDate.getTime());
+    }
+
+    /**
+     * @return version of this snapshot, incremented on every published load, 0 if nothing is loaded yet or
+     * {@link #RESTORED_VERSION}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return configurations in matching priority order
+     */
+    public List<DecoratorConfiguration> getConfigurations() {
+        return configurations;
+    }
+
+    /**
+     * @return configurations per configuration node name, in node order
+     */
+    public Map<String, List<DecoratorConfiguration>> getNodeConfigurations() {
+        return nodeConfigurations;
+    }
+
+    public HostMatcher getHostMatcher() {
+        return hostMatcher;
+    }
+
+    public CacheSettings getCacheSettings() {
+        return cacheSettings;
+    }
+
+    /**
+     * @return configured host header chain, empty if derived from the configurations
+     */
+    public List<String> getHostHeaders() {
+        return hostHeaders;
+    }
+
+    public HostExtractor getHostExtractor() {
+        return hostExtractor;
+    }
+
+    public Date getLoadDate() {
+        return new Date(loadDate.getTime());
+    }
+
+    public boolean isEmpty() {
+        return version == 0;
+    }
+
+    public boolean isRestored() {
+        return version == RESTORED_VERSION;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigurationSnapshot{" +
+                "version=" + version +
+                ", configurations=" + configurations.size() +
+                ", cacheSettings=" + cacheSettings +
+                ", hostExtractor=" + hostExtractor +
+                ", loadDate=" + loadDate +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.io.IOException;
+
+/**
+ * Source of decorator configuration other than the repository, see
+ * {@link DecoratorConfigurationLoader#setConfigurationSource(ConfigurationSource)}.
+ */
+public interface ConfigurationSource {
+
+    /**
+     * @return configuration read from this source or null if the source is not available (yet)
+     */
+    ConfigurationData read() throws IOException;
+
+    /**
+     * Starts watching this source for changes, if supported.
+     *
+     * @param changeListener called on every change of the source
+     */
+    void start(Runnable changeListener);
+
+    /**
+     * Stops watching this source.
+     */
+    void stop();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the background threads of the decorators. Virtual threads are created through reflection, so
+ * they are used on Java 21 and later while the code still runs on Java 8.
+ */
+public final class DaemonThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(DaemonThreads.class);
+
+    private DaemonThreads() {
+    }
+
+    /**
+     * @param name    thread name
+     * @param virtual true to create virtual threads if the JVM supports them
+     * @return factory of daemon threads with given name
+     */
+    public static ThreadFactory factory(final String name, final boolean virtual) {
+        if (virtual) {
+            final ThreadFactory factory = virtualFactory(name);
+            if (factory != null) {
+                return factory;
+            }
+        }
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads
+     */
+    public static boolean isVirtualSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return {@code Thread.ofVirtual().name(name).factory()} or null if not supported; virtual threads are always
+     * daemon threads
+     */
+    private static ThreadFactory virtualFactory(final String name) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            final Method setName = builderType.getMethod("name", String.class);
+            final Object named = setName.invoke(builder, name);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(named);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            log.info("Virtual threads not supported by this JVM, using platform threads for {}", name);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Cannot create virtual threads, using platform threads for {}: {}", name, e.toString());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sampled trace of decorator decisions, kept in a lock-free ring buffer of the most recent entries. Disabled (sample
+ * rate 0) by default, which costs one volatile read per request.
+ */
+public final class DecisionTracer {
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile int sampleRate;
+
+    public DecisionTracer(final int capacity) {
+        entries = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate trace one in every {@code sampleRate} requests, 0 disables tracing
+     */
+    public void setSampleRate(final int sampleRate) {
+        this.sampleRate = Math.max(0, sampleRate);
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Records the decision if this request is sampled.
+     */
+    public void record(final String host, final DecoratorConfiguration configuration, final long version) {
+        final int rate = sampleRate;
+        if (rate <= 0 || (rate > 1 && requests.getAndIncrement() % rate != 0)) {
+            return;
+        }
+        final Entry entry = new Entry(System.currentTimeMillis(), host, configuration, version);
+        entries.set((int) (written.getAndIncrement() % entries.length()), entry);
+    }
+
+    /**
+     * @return traced decisions, oldest first. Entries written while dumping may be skipped or included.
+     */
+    public List<Entry> getEntries() {
+        final long end = written.get();
+        final int capacity = entries.length();
+        final List<Entry> result = new ArrayList<>(capacity);
+        for (long i = Math.max(0, end - capacity); i < end; i++) {
+            final Entry entry = entries.get((int) (i % capacity));
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    public static final class Entry {
+        private final long timestamp;
+        private final String host;
+        private final String pattern;
+        private final long version;
+        private final String contextPath;
+        private final String outcome;
+
+        private Entry(final long timestamp, final String host, final DecoratorConfiguration configuration, final long version) {
+            this.timestamp = timestamp;
+            this.host = host;
+            this.version = version;
+            if (configuration.invalid()) {
+                pattern = null;
+                contextPath = null;
+                outcome = "unmatched";
+            } else {
+                pattern = configuration.getHostPattern().pattern();
+                contextPath = configuration.getContextPath();
+                outcome = configuration.disabled() ? "disabled" : "decorated";
+            }
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getContextPath() {
+            return contextPath;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + " " + outcome + " host=" + host + " pattern=" + pattern + " contextPath=" + contextPath
+                    + " version=" + version;
+        }
+    }
+}
@@ -22,8 +22,9 @@ import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -36,6 +37,26 @@ public final class DecoratorConfiguration {
     private String hostHeader;
     private String contextPath;
     private Pattern hostPattern;
+    private MatchType matchType = MatchType.REGEX;
+    private String matchValue;
+
+    /**
+     * How {@link HostMatcher} resolves the host pattern of a configuration.
+     */
+    public enum MatchType {
+        /**
+         * literal host name, {@link #getMatchValue()} holds the host name
+         */
+        EXACT,
+        /**
+         * {@code .*} followed by a literal, {@link #getMatchValue()} holds the literal suffix
+         */
+        SUFFIX,
+        /**
+         * any other regular expression
+         */
+        REGEX
+    }
 
 
     private DecoratorConfiguration() {
@@ -65,7 +86,14 @@ public final class DecoratorConfiguration {
     public Pattern getHostPattern() {
         return hostPattern;
     }
-    
+
+    public MatchType getMatchType() {
+        return matchType;
+    }
+
+    public String getMatchValue() {
+        return matchValue;
+    }
 
     public boolean disabled() {
         return !enabled;
@@ -79,7 +107,7 @@ public final class DecoratorConfiguration {
     public static final class Builder {
         private static final Logger log = LoggerFactory.getLogger(Builder.class);
 
-        private final Map<String, String> mappings = new HashMap<>();
+        private final Map<String, String> mappings = new LinkedHashMap<>();
         private String hostHeader;
         private boolean enabled;
 
@@ -110,10 +138,13 @@ public final class DecoratorConfiguration {
         }
 
 
+        /**
+         * @return configurations in the order the host names were provided, which is their matching priority
+         */
         public Set<DecoratorConfiguration> build() {
 
-            final Set<DecoratorConfiguration> objects = new HashSet<>();
-            final Map<Pattern, String> patterns = parseHostPatterns(mappings);;
+            final Set<DecoratorConfiguration> objects = new LinkedHashSet<>();
+            final Map<Pattern, String> patterns = parseHostPatterns(mappings);
             for (Map.Entry<Pattern, String> entry : patterns.entrySet()) {
                 final Pattern host = entry.getKey();
                 final String contextPath = entry.getValue();
@@ -122,6 +153,7 @@ public final class DecoratorConfiguration {
                 config.hostHeader = hostHeader;
                 config.contextPath = contextPath;
                 config.hostPattern = host;
+                classify(config);
                 validate(config);
                 objects.add(config);
             }
@@ -133,11 +165,58 @@ public final class DecoratorConfiguration {
             config.valid = config.contextPath != null && config.hostPattern !=null;
         }
 
+        private void classify(final DecoratorConfiguration config) {
+            String source = config.hostPattern.pattern();
+            if (source.startsWith("^")) {
+                source = source.substring(1);
+            }
+            if (source.endsWith("$") && !source.endsWith("\\$")) {
+                source = source.substring(0, source.length() - 1);
+            }
+            final boolean suffix = source.startsWith(".*");
+            final String literal = literal(suffix ? source.substring(2) : source);
+            if (literal == null || (!suffix && literal.isEmpty())) {
+                config.matchType = MatchType.REGEX;
+                return;
+            }
+            config.matchType = suffix ? MatchType.SUFFIX : MatchType.EXACT;
+            // hosts are matched in their normalized, lower case form, see HostNormalizer
+            config.matchValue = literal.toLowerCase(Locale.ENGLISH);
+        }
+
+        /**
+         * Unescapes a host name pattern that contains no regex constructs other than dots. NOTE: an unescaped dot is
+         * taken as a literal dot, e.g. {@code 127.0.0.1} is treated as {@code 127\.0\.0\.1}.
+         *
+         * @return literal host name or null if given pattern is a true regular expression
+         */
+        private static String literal(final String source) {
+            final StringBuilder literal = new StringBuilder(source.length());
+            for (int i = 0; i < source.length(); i++) {
+                final char c = source.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 >= source.length()) {
+                        return null;
+                    }
+                    final char escaped = source.charAt(++i);
+                    if (escaped != '.' && escaped != '-') {
+                        return null;
+                    }
+                    literal.append(escaped);
+                } else if (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' || c == ':') {
+                    literal.append(c);
+                } else {
+                    return null;
+                }
+            }
+            return literal.toString();
+        }
+
         private Map<Pattern, String> parseHostPatterns(final Map<String, String> hosts) {
             if (hosts == null) {
                 throw new IllegalStateException("No host names provided");
             }
-            final Map<Pattern, String> patterns = new HashMap<>();
+            final Map<Pattern, String> patterns = new LinkedHashMap<>();
             for (Map.Entry<String, String> entry : hosts.entrySet()) {
                 String host = entry.getKey();
                 if (Strings.isNullOrEmpty(host)) {
@@ -145,7 +224,8 @@ public final class DecoratorConfiguration {
                     continue;
                 }
                 try {
-                    final Pattern pattern = Pattern.compile(host);
+                    // host names are case insensitive:
+                    final Pattern pattern = Pattern.compile(host, Pattern.CASE_INSENSITIVE);
                     patterns.put(pattern, entry.getValue());
                 } catch (Exception e) {
                     log.error("Invalid host value {}", host);
@@ -167,6 +247,7 @@ public final class DecoratorConfiguration {
                 ", hostHeader='" + hostHeader + '\'' +
                 ", contextPath='" + contextPath + '\'' +
                 ", hostPattern=" + hostPattern +
+                ", matchType=" + matchType +
                 '}';
     }
 }
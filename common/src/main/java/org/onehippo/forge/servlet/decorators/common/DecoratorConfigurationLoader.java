@@ -21,10 +21,29 @@ import org.slf4j.LoggerFactory;
 
 import javax.jcr.*;
 import javax.jcr.observation.Event;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -37,8 +56,33 @@ public abstract class DecoratorConfigurationLoader {
     private Credentials credentials;
     private Date lastLoadDate = new Date();
     protected volatile boolean needRefresh = true;
-    private final Set<DecoratorConfiguration> data = ConcurrentHashMap.newKeySet();
-
+    private volatile ConfigurationSnapshot snapshot = ConfigurationSnapshot.EMPTY;
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final AtomicReference<CompletableFuture<ConfigurationSnapshot>> pendingReload = new AtomicReference<>();
+    private SharedScheduler scheduler;
+    private volatile boolean stopped;
+    // written while holding the monitor, read lock-free by isReloadPending()
+    private volatile ScheduledFuture<?> scheduledReload;
+    private long firstScheduledEvent;
+    private volatile long reloadDelayInMillis = DecoratorConst.RELOAD_DELAY_IN_MILLIS;
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder coalescedInvalidations = new LongAdder();
+    private final LongAdder reloadBatches = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failedReloads = new LongAdder();
+    private final LongAdder reloadNanos = new LongAdder();
+    private volatile long lastReloadDurationInMillis;
+    private final Set<String> changedNodes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullReload = new AtomicBoolean(true);
+    private volatile Path snapshotFile;
+    private ConfigurationSource configurationSource;
+    private volatile String loadedChecksum;
+    private volatile boolean verifyChecksum;
+    private ScheduledFuture<?> checksumRecheck;
+    private volatile long reloadJitterInMillis;
+    private final LongAdder skippedReloads = new LongAdder();
+    private volatile boolean virtualThreads;
 
 
 
@@ -46,38 +90,433 @@ public abstract class DecoratorConfigurationLoader {
         return needRefresh;
     }
 
-    public synchronized Set<DecoratorConfiguration> load() {
+    /**
+     * Loads the configuration if needed, waiting for a load in progress by another thread.
+     *
+     * @return current configuration snapshot
+     */
+    public ConfigurationSnapshot load() {
+        loadLock.lock();
+        try {
+            return doLoad();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules a {@link #load()} on the {@link SharedScheduler shared scheduler}. Calls made before the scheduled load has started
+     * share the same reload, calls made while it runs schedule another one, so no change gets lost.
+     *
+     * @return future completed with the snapshot published by the reload
+     */
+    public CompletableFuture<ConfigurationSnapshot> reloadAsync() {
+        final CompletableFuture<ConfigurationSnapshot> pending = pendingReload.get();
+        if (pending != null) {
+            return pending;
+        }
+        final CompletableFuture<ConfigurationSnapshot> reload = new CompletableFuture<>();
+        if (!pendingReload.compareAndSet(null, reload)) {
+            final CompletableFuture<ConfigurationSnapshot> other = pendingReload.get();
+            return other != null ? other : CompletableFuture.completedFuture(snapshot);
+        }
+        try {
+            scheduler().execute(() -> {
+                pendingReload.compareAndSet(reload, null);
+                if (stopped) {
+                    reload.complete(snapshot);
+                    return;
+                }
+                try {
+                    reload.complete(load());
+                } catch (RuntimeException e) {
+                    reload.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingReload.compareAndSet(reload, null);
+            reload.completeExceptionally(e);
+        }
+        return reload;
+    }
+
+    /**
+     * Schedules a reload once no invalidation came in for the reload delay (see
+     * {@link DecoratorConst#CONFIG_RELOAD_DELAY}), so the burst of events caused by saving one configuration node
+     * results in a single reload. Postponing stops after {@link DecoratorConst#RELOAD_MAX_DELAY_FACTOR} times the delay.
+     */
+    private synchronized void scheduleReload() {
+        invalidations.increment();
+        final long jitter = reloadJitterInMillis;
+        // spreads the reloads of cluster nodes receiving the same event:
+        final long delay = reloadDelayInMillis + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        final long now = System.currentTimeMillis();
+        if (scheduledReload != null && !scheduledReload.isDone()) {
+            if (now - firstScheduledEvent >= reloadDelayInMillis * DecoratorConst.RELOAD_MAX_DELAY_FACTOR || !scheduledReload.cancel(false)) {
+                // due (or already running), this event is picked up by it
+                coalescedInvalidations.increment();
+                return;
+            }
+            coalescedInvalidations.increment();
+        } else {
+            firstScheduledEvent = now;
+        }
+        try {
+            scheduledReload = scheduler().schedule(() -> {
+                reloadBatches.increment();
+                reloadAsync();
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Reload not scheduled: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a reload is scheduled or about to run
+     */
+    public boolean isReloadPending() {
+        if (pendingReload.get() != null) {
+            return true;
+        }
+        final ScheduledFuture<?> scheduled = scheduledReload;
+        return scheduled != null && !scheduled.isDone();
+    }
+
+    /**
+     * @return number of invalidations (e.g. JCR events) received
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return number of invalidations merged into a reload scheduled by an earlier invalidation
+     */
+    public long getCoalescedInvalidationCount() {
+        return coalescedInvalidations.sum();
+    }
+
+    /**
+     * @return number of reloads triggered by (batches of) invalidations
+     */
+    public long getReloadBatchCount() {
+        return reloadBatches.sum();
+    }
+
+    /**
+     * @return number of (successful and failed) configuration reads from the repository
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    public long getFailedReloadCount() {
+        return failedReloads.sum();
+    }
+
+    public long getLastReloadDurationInMillis() {
+        return lastReloadDurationInMillis;
+    }
+
+    public long getTotalReloadDurationInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(reloadNanos.sum());
+    }
+
+    /**
+     * @return number of reloads skipped because the configuration checksum was unchanged
+     */
+    public long getSkippedReloadCount() {
+        return skippedReloads.sum();
+    }
+
+    public long getReloadJitterInMillis() {
+        return reloadJitterInMillis;
+    }
+
+    public void setReloadJitterInMillis(final long reloadJitterInMillis) {
+        this.reloadJitterInMillis = Math.max(0, reloadJitterInMillis);
+    }
+
+    public long getReloadDelayInMillis() {
+        return reloadDelayInMillis;
+    }
+
+    public void setReloadDelayInMillis(final long reloadDelayInMillis) {
+        this.reloadDelayInMillis = Math.max(0, reloadDelayInMillis);
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @param virtualThreads true to run reloads on virtual threads (Java 21 and later), so reading the configuration
+     *                       doesn't hold a platform thread. Applies if the shared scheduler is started after this call.
+     */
+    public void setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Cancels scheduled reloads and releases the shared scheduler. Terminal: later reloads are rejected, so nothing
+     * acquires the scheduler again.
+     */
+    public synchronized void shutdown() {
+        if (configurationSource != null) {
+            configurationSource.stop();
+        }
+        stopped = true;
+        if (scheduledReload != null) {
+            scheduledReload.cancel(false);
+        }
+        if (checksumRecheck != null) {
+            checksumRecheck.cancel(false);
+        }
+        if (scheduler != null) {
+            scheduler.release();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return last published configuration snapshot, never blocks
+     */
+    public ConfigurationSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Marks the configuration node affected by given event as changed and schedules a background reload. Only that
+     * node is parsed again, unless the event concerns the module configuration node itself.
+     */
+    public void invalidate(final Event event) {
+        final String nodeName = changedNodeName(event);
+        if (nodeName == null) {
+            fullReload.set(true);
+        } else {
+            changedNodes.add(nodeName);
+        }
+        needRefresh = true;
+        scheduleReload();
+    }
+
+    /**
+     * Marks the whole configuration as changed and schedules a background reload.
+     */
+    public void invalidate() {
+        fullReload.set(true);
+        needRefresh = true;
+        scheduleReload();
+    }
+
+    /**
+     * Marks the whole configuration as changed without scheduling a reload, for loaders that detect changes
+     * while being asked {@link #needReloading()}.
+     */
+    protected void requestFullReload() {
+        fullReload.set(true);
+        needRefresh = true;
+    }
+
+    public Date getLastLoadDate() {
+        return lastLoadDate;
+    }
+
+    private ConfigurationSnapshot doLoad() {
         if (!needReloading()) {
-            return data;
+            return snapshot;
         }
 
         log.debug("Previously loaded: {}", lastLoadDate);
+        // cleared before reading, so an invalidation during this load triggers another one:
+        needRefresh = false;
+        final ConfigurationSource source = getConfigurationSource();
+        if (source != null) {
+            return loadSource(source);
+        }
         Session session = null;
+        final long start = System.nanoTime();
         try {
             session = getSession();
             if (session == null) {
                 log.warn("Session was null, cannot load decorator config data");
-                return data;
+                needRefresh = true;
+                return snapshot;
             }
             final Node node = session.getNode(configurationLocation);
-            parseConfig(node);
+            final String checksum = ConfigurationChecksum.read(session, configurationLocation);
+            final boolean verify = verifyChecksum;
+            if (isUnchanged(checksum) && (!verify || checksum.equals(ConfigurationChecksum.compute(node)))) {
+                log.debug("Decorator configuration checksum unchanged, skipping reload");
+                skippedReloads.increment();
+                verifyChecksum = false;
+                if (!verify) {
+                    scheduleChecksumRecheck();
+                }
+                return snapshot;
+            }
+            reloads.increment();
+            final Date loadDate = new Date();
+            // cleared atomically, so a full reload requested while this one runs is not lost
+            final boolean full = fullReload.getAndSet(false) || snapshot.isEmpty();
+            snapshot = full ? parseConfig(node, loadDate) : patchConfig(node, loadDate);
+            lastLoadDate = loadDate;
+            loadedChecksum = checksum;
+            verifyChecksum = false;
+            log.info("Published decorator configuration: {}", snapshot);
+            writeSnapshotFile(snapshot);
         } catch (Exception e) {
-            log.error("Error loading decorator configuration", e);
+            log.error("Error loading decorator configuration, keeping previous configuration", e);
+            failedReloads.increment();
+            // retried by the next load, e.g. the configuration node doesn't exist yet at startup
+            needRefresh = true;
+            fullReload.set(true);
+            if (session != null && e instanceof RepositoryException) {
+                sessionFailed(session);
+            }
         } finally {
             closeSession(session);
+            if (session != null) {
+                final long duration = System.nanoTime() - start;
+                reloadNanos.add(duration);
+                lastReloadDurationInMillis = TimeUnit.NANOSECONDS.toMillis(duration);
+            }
         }
-        needRefresh = false;
-        lastLoadDate = new Date();
-        return data;
+        return snapshot;
     }
 
-    public synchronized void invalidate(final Event event) {
-        // we invalidate on any event:
-        needRefresh = true;
+    /**
+     * @return true if the stored checksum equals the one of the published configuration, see
+     * {@link ConfigurationChecksum}
+     */
+    private boolean isUnchanged(final String checksum) {
+        return checksum != null && !snapshot.isEmpty() && checksum.equals(loadedChecksum);
     }
 
-    public Date getLastLoadDate() {
-        return lastLoadDate;
+    /**
+     * Verifies the stored checksum if it doesn't change within {@link DecoratorConst#RELOAD_MAX_DELAY_FACTOR} times the
+     * reload delay: the configuration is only reloaded if the stored checksum differs from the one computed from the
+     * configuration itself, i.e. if the CMS module didn't update it.
+     */
+    private synchronized void scheduleChecksumRecheck() {
+        if (checksumRecheck != null && !checksumRecheck.isDone()) {
+            return;
+        }
+        final String expected = loadedChecksum;
+        try {
+            checksumRecheck = scheduler().schedule(() -> {
+                if (Objects.equals(expected, loadedChecksum)) {
+                    verifyChecksum = true;
+                    needRefresh = true;
+                    reloadAsync();
+                }
+            }, reloadDelayInMillis * DecoratorConst.RELOAD_MAX_DELAY_FACTOR, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Checksum not rechecked: {}", e.getMessage());
+        }
+    }
+
+    private ConfigurationSnapshot loadSource(final ConfigurationSource source) {
+        final long start = System.nanoTime();
+        try {
+            final ConfigurationData data = source.read();
+            if (data == null) {
+                log.warn("Configuration source {} not available, cannot load decorator config data", source);
+                needRefresh = true;
+                return snapshot;
+            }
+            reloads.increment();
+            if (data.getReloadDelayInMillis() != null) {
+                setReloadDelayInMillis(data.getReloadDelayInMillis());
+            }
+            final Date loadDate = new Date();
+            snapshot = new ConfigurationSnapshot(versions.incrementAndGet(), data.getNodeConfigurations(),
+                    data.getCacheSettings(), data.getHostHeaders(), loadDate);
+            lastLoadDate = loadDate;
+            log.info("Published decorator configuration from {}: {}", source, snapshot);
+            writeSnapshotFile(snapshot);
+        } catch (Exception e) {
+            log.error("Error loading decorator configuration from " + source + ", keeping previous configuration", e);
+            reloads.increment();
+            failedReloads.increment();
+            needRefresh = true;
+        } finally {
+            final long duration = System.nanoTime() - start;
+            reloadNanos.add(duration);
+            lastReloadDurationInMillis = TimeUnit.NANOSECONDS.toMillis(duration);
+        }
+        return snapshot;
+    }
+
+    public synchronized ConfigurationSource getConfigurationSource() {
+        return configurationSource;
+    }
+
+    /**
+     * Loads the configuration from given source instead of the repository. Changes reported by the source are
+     * debounced and reloaded like repository changes.
+     *
+     * @param source configuration source or null to load from the repository again
+     */
+    public void setConfigurationSource(final ConfigurationSource source) {
+        final ConfigurationSource previous;
+        synchronized (this) {
+            previous = configurationSource;
+            configurationSource = source;
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        if (source != null) {
+            source.start(this::invalidate);
+        }
+        requestFullReload();
+    }
+
+    private void writeSnapshotFile(final ConfigurationSnapshot loaded) {
+        final Path file = snapshotFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            SnapshotFile.write(loaded, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot write configuration snapshot file {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * @return file the last configuration loaded from the repository is written to, or null
+     */
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @param snapshotFile file to write each configuration loaded from the repository to, see {@link SnapshotFile}
+     */
+    public void setSnapshotFile(final Path snapshotFile) {
+        final boolean first = this.snapshotFile == null;
+        this.snapshotFile = snapshotFile;
+        final ConfigurationSnapshot current = snapshot;
+        if (first && snapshotFile != null && !current.isEmpty()) {
+            // loaded before the file was known, e.g. by another filter sharing this loader
+            try {
+                scheduler().execute(() -> writeSnapshotFile(current));
+            } catch (RejectedExecutionException e) {
+                log.debug("Snapshot file not written: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized SharedScheduler scheduler() {
+        if (stopped) {
+            throw new RejectedExecutionException("Configuration loader is shut down");
+        }
+        if (scheduler == null) {
+            scheduler = SharedScheduler.acquire(virtualThreads);
+        }
+        return scheduler;
     }
 
     protected Session getSession() {
@@ -96,16 +535,106 @@ public abstract class DecoratorConfigurationLoader {
         }
     }
 
-    private void parseConfig(final Node node) throws RepositoryException {
-        data.clear();
+    /**
+     * Called before {@link #closeSession(Session)} when reading with given session failed, for loaders that keep
+     * their session to drop it.
+     */
+    protected void sessionFailed(final Session session) {
+    }
+
+    private ConfigurationSnapshot parseConfig(final Node node, final Date loadDate) throws RepositoryException {
+        changedNodes.clear();
+        parseReloadDelay(node);
+        final CacheSettings cacheSettings = parseCacheSettings(node);
+        final String[] hostHeaders = JcrUtils.getMultipleStringProperty(node, DecoratorConst.CONFIG_HOST_HEADERS, new String[0]);
+        final Map<String, Set<DecoratorConfiguration>> nodeConfigurations = new LinkedHashMap<>();
+        final NodeIterator nodes = node.getNodes();
+        while (nodes.hasNext()) {
+            final Node configNode = nodes.nextNode();
+            nodeConfigurations.put(configNode.getName(), parseOrEmpty(configNode));
+        }
+        return new ConfigurationSnapshot(versions.incrementAndGet(), nodeConfigurations, cacheSettings, Arrays.asList(hostHeaders), loadDate);
+    }
+
+    /**
+     * Parses changed configuration nodes only, all others (and the module settings) are taken from the current snapshot.
+     * Child nodes are still iterated to pick up node order, additions and removals (so also renames).
+     */
+    private ConfigurationSnapshot patchConfig(final Node node, final Date loadDate) throws RepositoryException {
+        final Set<String> changed = new HashSet<>();
+        for (String name : changedNodes) {
+            changedNodes.remove(name);
+            changed.add(name);
+        }
+        final Map<String, List<DecoratorConfiguration>> previous = snapshot.getNodeConfigurations();
+        final Map<String, Collection<DecoratorConfiguration>> nodeConfigurations = new LinkedHashMap<>();
         final NodeIterator nodes = node.getNodes();
         while (nodes.hasNext()) {
             final Node configNode = nodes.nextNode();
-            final Set<DecoratorConfiguration> configurations = parse(configNode);
-            if (configurations != null) {
-                data.addAll(configurations);
+            final String name = configNode.getName();
+            final List<DecoratorConfiguration> unchanged = previous.get(name);
+            if (unchanged == null || changed.contains(name)) {
+                nodeConfigurations.put(name, parseOrEmpty(configNode));
+            } else {
+                nodeConfigurations.put(name, unchanged);
             }
         }
+        log.debug("Re-parsed configuration nodes: {}", changed);
+        return new ConfigurationSnapshot(versions.incrementAndGet(), nodeConfigurations, snapshot.getCacheSettings(),
+                snapshot.getHostHeaders(), loadDate);
+    }
+
+    /**
+     * @return name of the configuration node (direct child of the configuration location) affected by given event,
+     * or null if the event concerns the configuration location itself or cannot be mapped
+     */
+    private String changedNodeName(final Event event) {
+        if (event == null || configurationLocation == null) {
+            return null;
+        }
+        final String path;
+        try {
+            path = event.getPath();
+        } catch (RepositoryException e) {
+            log.warn("Cannot read event path, reloading all configuration: {}", e.toString());
+            return null;
+        }
+        final String prefix = configurationLocation.endsWith("/") ? configurationLocation : configurationLocation + '/';
+        if (path == null || !path.startsWith(prefix)) {
+            return null;
+        }
+        final String relative = path.substring(prefix.length());
+        final int slash = relative.indexOf('/');
+        final boolean propertyEvent = (event.getType() & (Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED)) != 0;
+        if (slash < 0) {
+            // a property of the configuration location itself, e.g. the cache settings
+            return propertyEvent ? null : relative;
+        }
+        return relative.substring(0, slash);
+    }
+
+    private Set<DecoratorConfiguration> parseOrEmpty(final Node node) throws RepositoryException {
+        final Set<DecoratorConfiguration> configurations = parse(node);
+        return configurations == null ? Collections.emptySet() : configurations;
+    }
+
+    private void parseReloadDelay(final Node node) throws RepositoryException {
+        final Long delay = JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_RELOAD_DELAY, null);
+        if (delay != null) {
+            setReloadDelayInMillis(delay);
+        }
+        setReloadJitterInMillis(JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_RELOAD_JITTER, 0L));
+    }
+
+    private CacheSettings parseCacheSettings(final Node node) throws RepositoryException {
+        final CacheSettings.Policy policy = CacheSettings.parsePolicy(JcrUtils.getStringProperty(node, DecoratorConst.CONFIG_CACHE_POLICY, null));
+        final Long maxSize = JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_CACHE_MAX_SIZE, CacheSettings.DEFAULT.getMaxSize());
+        final Long expires = JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_CACHE_EXPIRES, CacheSettings.DEFAULT.getExpiresInSeconds());
+        final Long negativeMaxSize = JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_NEGATIVE_CACHE_MAX_SIZE, CacheSettings.DEFAULT.getNegativeMaxSize());
+        final Long refreshAfter = JcrUtils.getLongProperty(node, DecoratorConst.CONFIG_CACHE_REFRESH_AFTER, 0L);
+        final CacheSettings settings = new CacheSettings(policy, maxSize, expires, negativeMaxSize, refreshAfter);
+        log.info("Loaded cache settings: {}", settings);
+        return settings;
     }
 
     private Set<DecoratorConfiguration> parse(final Node node) throws RepositoryException {
@@ -132,7 +661,7 @@ public abstract class DecoratorConfigurationLoader {
         }
         final Map<String, String> mappings = IntStream.range(0, hostLength)
                 .boxed()
-                .collect(Collectors.toMap(i -> hosts[i], i -> contextPaths[i]));
+                .collect(Collectors.toMap(i -> hosts[i], i -> contextPaths[i], (first, second) -> first, LinkedHashMap::new));
 
         final String header = JcrUtils.getStringProperty(node, DecoratorConst.CONFIG_HEADER_HOST, DecoratorConst.HEADER_X_FORWARDED_HOST);
         final Set<DecoratorConfiguration> configs = DecoratorConfiguration.
@@ -23,14 +23,67 @@ public final class DecoratorConst {
     public static final String CONFIG_HOSTNAME = "hostnames";
     public static final String CONFIG_CONTEXT_PATHS = "contextpaths";
     public static final String CONFIG_HEADER_HOST = "hostheader";
+    public static final String CONFIG_CACHE_POLICY = "cachepolicy";
+    public static final String CONFIG_CACHE_MAX_SIZE = "cachemaxsize";
+    public static final String CONFIG_CACHE_EXPIRES = "cacheexpiresinseconds";
+    public static final String CONFIG_NEGATIVE_CACHE_MAX_SIZE = "negativecachemaxsize";
+    public static final String CONFIG_CACHE_REFRESH_AFTER = "cacherefreshafterinseconds";
+    public static final String CONFIG_RELOAD_DELAY = "reloaddelayinmillis";
+    public static final String CONFIG_HOST_HEADERS = "hostheaders";
+    public static final String CONFIG_CHECKSUM = "configchecksum";
+    public static final String CONFIG_CHECKSUM_LOCATION = "configurationlocation";
+    public static final String CONFIG_RELOAD_JITTER = "reloadjitterinmillis";
+
+    /**
+     * Runtime node the CMS module stores the configuration checksum on, outside the bootstrapped configuration
+     */
+    public static final String CHECKSUM_LOCATION = "/hippo:configuration/hippo:temporary/servlet-filter-decorators";
+
+    public static final String INIT_PARAM_TRACE_SAMPLE_RATE = "traceSampleRate";
+    public static final String INIT_PARAM_TRACE_CAPACITY = "traceCapacity";
+    public static final String INIT_PARAM_WARMUP = "warmup";
+    public static final String INIT_PARAM_WARMUP_HOSTS = "warmupHosts";
+    public static final String INIT_PARAM_SNAPSHOT_FILE = "snapshotFile";
+    public static final String INIT_PARAM_CONFIGURATION_FILE = "configurationFile";
+    public static final String INIT_PARAM_ASYNC_INITIAL_LOAD = "asyncInitialLoad";
+    public static final String INIT_PARAM_VIRTUAL_THREADS = "virtualThreads";
+
+    /**
+     * Servlet context attribute set to {@code Boolean.TRUE} once decoration is live, e.g. for health checks
+     */
+    public static final String CONTEXT_ATTRIBUTE_READY = "org.onehippo.forge.servlet.decorators.ready";
+
+    /**
+     * Request attribute holding the decorated request while the decorate filter chain runs, see
+     * {@link CommonUndecorateFilter}
+     */
+    public static final String REQUEST_ATTRIBUTE_DECORATED = "org.onehippo.forge.servlet.decorators.decorated";
+
+    /**
+     * Request attribute set on a request suspended while the initial configuration loads, so it is not suspended
+     * again when dispatched
+     */
+    public static final String REQUEST_ATTRIBUTE_SUSPENDED = "org.onehippo.forge.servlet.decorators.suspended";
 
 
 
     public static final String HEADER_X_FORWARDED_HOST = "X-Forwarded-Host";
+    public static final String HEADER_FORWARDED = "Forwarded";
+    public static final String HEADER_HOST = "Host";
 
 
     public static final int CACHE_EXPIRES_IN_DAYS = 30;
     public static final long CACHE_MAX_SIZE = 100;
+    public static final long NEGATIVE_CACHE_MAX_SIZE = 1000;
+    public static final int INITIAL_LOAD_TIMEOUT_IN_SECONDS = 10;
+    public static final long RELOAD_DELAY_IN_MILLIS = 500;
+    public static final int RELOAD_MAX_DELAY_FACTOR = 10;
+    public static final int TRACE_CAPACITY = 256;
+    public static final long WARMUP_INTERVAL_IN_MILLIS = 1000;
+    public static final long WARMUP_MAX_INTERVAL_IN_MILLIS = 60000;
+    public static final int WARMUP_MAX_ATTEMPTS = 20;
+    public static final int SCHEDULER_THREADS = 2;
+    public static final int SCHEDULER_MAX_QUEUED = 1000;
 
     private DecoratorConst() {
     }
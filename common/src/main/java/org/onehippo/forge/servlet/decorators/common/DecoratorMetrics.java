@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and resolution latency histogram of a decorator filter.
+ */
+public final class DecoratorMetrics {
+
+    /**
+     * Upper bounds (inclusive, in microseconds) of the resolution latency buckets, the last bucket counts the rest.
+     */
+    public static final long[] LATENCY_BUCKETS_IN_MICROS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    private final LongAdder decorated = new LongAdder();
+    private final LongAdder passedThrough = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS_IN_MICROS.length + 1];
+
+    public DecoratorMetrics() {
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    public void recordDecorated() {
+        decorated.increment();
+    }
+
+    /**
+     * @param hostUnmatched true if the host of the request matched no configuration
+     */
+    public void recordPassedThrough(final boolean hostUnmatched) {
+        passedThrough.increment();
+        if (hostUnmatched) {
+            unmatched.increment();
+        }
+    }
+
+    public void recordResolution(final long nanos) {
+        latencyNanos.add(nanos);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_IN_MICROS.length && micros > LATENCY_BUCKETS_IN_MICROS[bucket]) {
+            bucket++;
+        }
+        latencyBuckets[bucket].increment();
+    }
+
+    public long getDecoratedCount() {
+        return decorated.sum();
+    }
+
+    public long getPassedThroughCount() {
+        return passedThrough.sum();
+    }
+
+    /**
+     * @return number of requests passed through because their host matched no configuration
+     */
+    public long getUnmatchedCount() {
+        return unmatched.sum();
+    }
+
+    public long getRequestCount() {
+        return getDecoratedCount() + getPassedThroughCount();
+    }
+
+    /**
+     * @return fraction of requests whose host matched no configuration
+     */
+    public double getUnmatchedRate() {
+        final long requests = getRequestCount();
+        return requests == 0 ? 0 : (double) getUnmatchedCount() / requests;
+    }
+
+    /**
+     * @return number of resolutions per latency bucket, see {@link #LATENCY_BUCKETS_IN_MICROS}
+     */
+    public long[] getLatencyHistogram() {
+        final long[] histogram = new long[latencyBuckets.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyBuckets[i].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * @return number of resolutions that took at most the upper bound of given bucket (all resolutions for the last
+     * bucket), see {@link #LATENCY_BUCKETS_IN_MICROS}
+     */
+    public long getCumulativeLatencyCount(final int bucket) {
+        long count = 0;
+        for (int i = 0; i <= bucket; i++) {
+            count += latencyBuckets[i].sum();
+        }
+        return count;
+    }
+
+    public double getAverageLatencyInMicros() {
+        long resolutions = 0;
+        for (LongAdder bucket : latencyBuckets) {
+            resolutions += bucket.sum();
+        }
+        return resolutions == 0 ? 0 : latencyNanos.sum() / 1000d / resolutions;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+/**
+ * Count-min sketch estimating the access frequency of keys, used as admission filter by
+ * {@link TinyLfuResolutionCache}. Counters saturate at 15 and are halved once the number of increments reaches ten
+ * times the sketch capacity, so old popularity ages out.
+ * <p>
+ * NOTE: not thread safe, only updated while holding the eviction lock of the cache; accesses are recorded in a
+ * {@link ReadBuffer} first.
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97cb3127, 0x5c6b8b7b, 0x3bd38b5d, 0x6a2ad7c1};
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final int[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(final long maximumSize) {
+        final int capacity = (int) Math.max(16, Math.min(maximumSize, MAX_CAPACITY));
+        final int length = Integer.highestOneBit(capacity - 1) << 1;
+        table = new int[length];
+        mask = length - 1;
+        sampleSize = 10 * capacity;
+    }
+
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int seed : SEEDS) {
+            frequency = Math.min(frequency, table[index(hash, seed)]);
+        }
+        return frequency;
+    }
+
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int seed : SEEDS) {
+            final int index = index(hash, seed);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+        additions = 0;
+    }
+
+    private void reset() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+    }
+
+    private int index(final int hash, final int seed) {
+        final int h = (hash ^ seed) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(final int hash) {
+        final int h = hash * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Least recently used cache, backed by a Guava {@link Cache}.
+ */
+public class GuavaResolutionCache<V> implements ResolutionCache<V> {
+
+    private final Cache<String, V> cache;
+    private final RefreshAhead<V> refreshAhead = new RefreshAhead<>(this::replace);
+
+    public GuavaResolutionCache(final long maxSize, final long expiresInSeconds) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expiresInSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public V getIfPresent(final String host) {
+        return cache.getIfPresent(host);
+    }
+
+    @Override
+    public void put(final String host, final V value) {
+        cache.put(host, value);
+    }
+
+    @Override
+    public V get(final String host, final Predicate<V> current, final Function<String, V> resolver) {
+        final V cached = cache.getIfPresent(host);
+        if (cached != null && current.test(cached)) {
+            return cached;
+        }
+        if (cached == null) {
+            // per host lock, so concurrent misses of one host share one resolution; a null value is not cached
+            return cache.asMap().computeIfAbsent(host, resolver);
+        }
+        return cache.asMap().compute(host, (key, old) -> old != null && current.test(old) ? old : resolver.apply(key));
+    }
+
+    @Override
+    public V getRefreshing(final String host, final Predicate<V> current, final Predicate<V> fresh,
+                           final Function<String, V> resolver, final Executor refresher) {
+        final V value = get(host, current, resolver);
+        if (value != null && !fresh.test(value)) {
+            refreshAhead.refresh(host, value, resolver, refresher);
+        }
+        return value;
+    }
+
+    private void replace(final String host, final V stale, final V value) {
+        // only if not replaced or removed meanwhile, a refresh must not resurrect an invalidated host:
+        if (value == null) {
+            cache.asMap().remove(host, stale);
+        } else {
+            cache.asMap().replace(host, stale, value);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshAhead.getRefreshCount();
+    }
+}
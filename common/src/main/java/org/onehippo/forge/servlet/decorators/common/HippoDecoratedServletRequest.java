@@ -16,22 +16,27 @@
 
 package org.onehippo.forge.servlet.decorators.common;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import javax.servlet.RequestDispatcher;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Strings;
 
 public class HippoDecoratedServletRequest extends HttpServletRequestWrapper {
 
-    private static final Logger log = LoggerFactory.getLogger(HippoDecoratedServletRequest.class);
+    private static final String DISPATCH_ATTRIBUTE_PREFIX = "javax.servlet.";
     private final DecoratorConfiguration config;
     /**
      * Flag we can set in case we cannot unwrap our decorator e.g. when it is deeply decorated by Spring security wrappers
      */
-    private boolean serveOriginal;
+    private volatile boolean serveOriginal;
+    /**
+     * Number of nested scopes (see {@link #pushOriginal()}) serving the original values
+     */
+    private final AtomicInteger originalScopes = new AtomicInteger();
+    private DecoratedUri decoratedUri;
+    private DecoratedUri dispatchUri;
 
     public HippoDecoratedServletRequest(HttpServletRequest request, final DecoratorConfiguration config) {
         super(request);
@@ -42,19 +47,86 @@ public class HippoDecoratedServletRequest extends HttpServletRequestWrapper {
     public String getRequestURI() {
         final String uri = super.getRequestURI();
         if (isDisabled()) {
-            log.debug("Serving original getRequestURI");
             return uri;
         }
         if (uri == null) {
             return null;
         }
+        return decoratedUri(uri).decorated;
+    }
 
-        final String newContextPath = config.getContextPath();
+    @Override
+    public StringBuffer getRequestURL() {
+        final String uri = super.getRequestURI();
+        if (isDisabled() || uri == null) {
+            return super.getRequestURL();
+        }
+        final DecoratedUri memo = decoratedUri(uri);
+        String url = memo.decoratedUrl;
+        if (url == null) {
+            final String original = super.getRequestURL().toString();
+            url = original.endsWith(uri) ? original.substring(0, original.length() - uri.length()) + memo.decorated : original;
+            memo.decoratedUrl = url;
+        }
+        // a new buffer each call, callers are allowed to modify it:
+        return new StringBuffer(url);
+    }
+
+    /**
+     * Decorates the forward and include request URI and context path attributes as well, as long as they refer to
+     * this web application. Servlet path, path info and path translated are relative to the context path, so they
+     * are the same for the original and decorated view.
+     */
+    @Override
+    public Object getAttribute(final String name) {
+        final Object value = super.getAttribute(name);
+        if (value == null || !name.startsWith(DISPATCH_ATTRIBUTE_PREFIX) || isDisabled()) {
+            return value;
+        }
+        if (RequestDispatcher.FORWARD_CONTEXT_PATH.equals(name) || RequestDispatcher.INCLUDE_CONTEXT_PATH.equals(name)) {
+            return value.equals(super.getContextPath()) ? config.getContextPath() : value;
+        }
+        if (RequestDispatcher.FORWARD_REQUEST_URI.equals(name)) {
+            return decorateDispatchUri(value, RequestDispatcher.FORWARD_CONTEXT_PATH);
+        }
+        if (RequestDispatcher.INCLUDE_REQUEST_URI.equals(name)) {
+            return decorateDispatchUri(value, RequestDispatcher.INCLUDE_CONTEXT_PATH);
+        }
+        return value;
+    }
+
+    private Object decorateDispatchUri(final Object uri, final String contextPathAttribute) {
+        final Object contextPath = super.getAttribute(contextPathAttribute);
+        if (!(uri instanceof String) || contextPath == null || !contextPath.equals(super.getContextPath())) {
+            return uri;
+        }
+        final DecoratedUri memo = dispatchUri;
+        if (memo != null && memo.matches((String) uri, (String) contextPath)) {
+            return memo.decorated;
+        }
+        final String decorated = decorateUri((String) uri, (String) contextPath);
+        dispatchUri = new DecoratedUri((String) uri, (String) contextPath, decorated);
+        return decorated;
+    }
+
+    private DecoratedUri decoratedUri(final String uri) {
         final String oldContextPath = super.getContextPath();
+        final DecoratedUri memo = decoratedUri;
+        // the wrapped request changes its URI or context path on forward and include, so both are part of the key:
+        if (memo != null && memo.matches(uri, oldContextPath)) {
+            return memo;
+        }
+        final DecoratedUri computed = new DecoratedUri(uri, oldContextPath, decorateUri(uri, oldContextPath));
+        decoratedUri = computed;
+        return computed;
+    }
+
+    private String decorateUri(final String uri, final String oldContextPath) {
+        final String newContextPath = config.getContextPath();
         if (oldContextPath.equals(newContextPath)) {
             return uri;
         }
-        final String stripped = stripOldContext(uri);
+        final String stripped = stripOldContext(uri, oldContextPath);
         if (Strings.isNullOrEmpty(newContextPath) || (newContextPath.equals("/") && stripped.startsWith("/"))) {
             return stripped;
         }
@@ -65,28 +137,39 @@ public class HippoDecoratedServletRequest extends HttpServletRequestWrapper {
     @Override
     public String getContextPath() {
         if (isDisabled()) {
-            log.debug("Serving original context path");
             return super.getContextPath();
         }
-        final String contextPath = config.getContextPath();
-        log.debug("Using decorated context path: {}", contextPath);
-        return contextPath;
+        return config.getContextPath();
     }
 
+    /**
+     * Serves the original values for good, prefer the scoped {@link #pushOriginal()} and {@link #popOriginal()}.
+     */
     public void setServeOriginal(final boolean serveOriginal) {
         this.serveOriginal = serveOriginal;
     }
 
+    public boolean isServeOriginal() {
+        return serveOriginal || originalScopes.get() > 0;
+    }
+
+    /**
+     * Serves the original values until the matching {@link #popOriginal()}. Scopes nest, e.g. for includes.
+     */
+    public void pushOriginal() {
+        originalScopes.incrementAndGet();
+    }
+
+    public void popOriginal() {
+        originalScopes.updateAndGet(scopes -> scopes > 0 ? scopes - 1 : 0);
+    }
+
     private boolean isDisabled() {
-        return serveOriginal || config.disabled() || config.invalid();
+        return serveOriginal || originalScopes.get() > 0 || config.disabled() || config.invalid();
     }
 
 
-    private String stripOldContext(final String uri) {
-        if (uri == null) {
-            return null;
-        }
-        final String oldContext = super.getContextPath();
+    private static String stripOldContext(final String uri, final String oldContext) {
         final int length = oldContext.length();
         if (length > 1 && uri.startsWith(oldContext)) {
             return uri.substring(length);
@@ -94,7 +177,24 @@ public class HippoDecoratedServletRequest extends HttpServletRequestWrapper {
         return uri;
     }
 
+    /**
+     * Decorated request URI (and lazily its request URL), memoized for the original request URI and context path it
+     * was computed from.
+     */
+    private static final class DecoratedUri {
+        private final String original;
+        private final String originalContextPath;
+        private final String decorated;
+        private String decoratedUrl;
+
+        private DecoratedUri(final String original, final String originalContextPath, final String decorated) {
+            this.original = original;
+            this.originalContextPath = originalContextPath;
+            this.decorated = decorated;
+        }
 
+        private boolean matches(final String uri, final String contextPath) {
+            return original.equals(uri) && originalContextPath.equals(contextPath);
+        }
+    }
 }
-
-
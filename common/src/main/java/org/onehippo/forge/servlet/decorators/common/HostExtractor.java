@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts the host of a request from an ordered chain of headers, falling back to the server name. Never uses
+ * {@link HttpServletRequest#getRemoteHost()}, which may do a reverse DNS lookup.
+ * <p>
+ * Header values are parsed without regular expressions: of a comma separated proxy list only the first (client
+ * facing) hop is used, and for the RFC 7239 {@code Forwarded} header its {@code host} parameter.
+ */
+public final class HostExtractor {
+
+    public static final HostExtractor DEFAULT = new HostExtractor(ImmutableList.of(DecoratorConst.HEADER_X_FORWARDED_HOST, DecoratorConst.HEADER_HOST));
+
+    private static final String FORWARDED_HOST = "host=";
+
+    private final String[] headers;
+
+    private HostExtractor(final Collection<String> headers) {
+        this.headers = headers.toArray(new String[0]);
+    }
+
+    /**
+     * @param configured explicitly configured header chain, see {@link DecoratorConst#CONFIG_HOST_HEADERS}
+     * @param configurations used if no chain is configured: their host headers in configuration order, followed by
+     *                       the {@code Host} header
+     */
+    public static HostExtractor create(final List<String> configured, final Collection<DecoratorConfiguration> configurations) {
+        final Set<String> headers = new LinkedHashSet<>();
+        if (configured != null && !configured.isEmpty()) {
+            headers.addAll(configured);
+        } else {
+            for (DecoratorConfiguration configuration : configurations) {
+                if (!Strings.isNullOrEmpty(configuration.getHostHeader())) {
+                    headers.add(configuration.getHostHeader());
+                }
+            }
+            if (headers.isEmpty()) {
+                return DEFAULT;
+            }
+            headers.add(DecoratorConst.HEADER_HOST);
+        }
+        return new HostExtractor(headers);
+    }
+
+    /**
+     * @return host (possibly including a port, see {@link HostNormalizer}) of the first header in the chain that has
+     * one, otherwise the server name
+     */
+    public String extract(final HttpServletRequest request) {
+        for (String header : headers) {
+            final String value = request.getHeader(header);
+            if (Strings.isNullOrEmpty(value)) {
+                continue;
+            }
+            final String host = DecoratorConst.HEADER_FORWARDED.equalsIgnoreCase(header) ? forwardedHost(value) : firstHop(value);
+            if (!host.isEmpty()) {
+                return host;
+            }
+        }
+        return request.getServerName();
+    }
+
+    public List<String> getHeaders() {
+        return ImmutableList.copyOf(headers);
+    }
+
+    static String firstHop(final String value) {
+        final int comma = value.indexOf(',');
+        return trim(value, 0, comma < 0 ? value.length() : comma);
+    }
+
+    /**
+     * @return host parameter of the first element of a {@code Forwarded} header, e.g. {@code example.com} for
+     * {@code for=192.0.2.60;proto=http;host="example.com", for=198.51.100.17}, or an empty string
+     */
+    static String forwardedHost(final String value) {
+        final int comma = value.indexOf(',');
+        final int end = comma < 0 ? value.length() : comma;
+        int start = 0;
+        while (start < end) {
+            int separator = value.indexOf(';', start);
+            if (separator < 0 || separator > end) {
+                separator = end;
+            }
+            int pairStart = start;
+            while (pairStart < separator && value.charAt(pairStart) == ' ') {
+                pairStart++;
+            }
+            if (value.regionMatches(true, pairStart, FORWARDED_HOST, 0, FORWARDED_HOST.length())) {
+                String host = trim(value, pairStart + FORWARDED_HOST.length(), separator);
+                if (host.length() >= 2 && host.charAt(0) == '"' && host.charAt(host.length() - 1) == '"') {
+                    host = host.substring(1, host.length() - 1);
+                }
+                return host;
+            }
+            start = separator + 1;
+        }
+        return "";
+    }
+
+    private static String trim(final String value, final int start, final int end) {
+        int from = start;
+        int to = end;
+        while (from < to && value.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && value.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return from == 0 && to == value.length() ? value : value.substring(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "HostExtractor{headers=" + String.join(" -> ", headers) + '}';
+    }
+}
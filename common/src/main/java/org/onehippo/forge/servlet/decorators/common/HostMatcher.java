@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled host matching engine. Configurations are matched in priority order (the order in which they are passed
+ * to {@link #compile(Collection)}), the first matching configuration wins:
+ * <ul>
+ * <li>literal host names (e.g. {@code localhost}, {@code 127\.0\.0\.1}) are resolved through a hash index</li>
+ * <li>suffix patterns (e.g. {@code .*onehippo\.com}) are resolved through a reversed suffix trie</li>
+ * <li>all other patterns are combined into one alternation, so a host needs at most one regex evaluation</li>
+ * </ul>
+ */
+public final class HostMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(HostMatcher.class);
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+    private final List<DecoratorConfiguration> configurations;
+    private final Map<String, Integer> exact;
+    private final SuffixNode suffixes;
+    private final Pattern combined;
+    private final int[] combinedGroups;
+    private final int[] combinedPriorities;
+    private final int[] standalonePriorities;
+    private final int regexMinPriority;
+
+    private HostMatcher(final List<DecoratorConfiguration> configurations) {
+        this.configurations = configurations;
+        final Map<String, Integer> exactIndex = new HashMap<>();
+        final SuffixNode root = new SuffixNode();
+        final List<Integer> regexPriorities = new ArrayList<>();
+        final List<Integer> standalone = new ArrayList<>();
+        for (int i = 0; i < configurations.size(); i++) {
+            final DecoratorConfiguration config = configurations.get(i);
+            switch (config.getMatchType()) {
+                case EXACT:
+                    exactIndex.putIfAbsent(config.getMatchValue(), i);
+                    break;
+                case SUFFIX:
+                    root.add(config.getMatchValue(), i);
+                    break;
+                default:
+                    if (BACK_REFERENCE.matcher(config.getHostPattern().pattern()).find()) {
+                        // numbered back references would break once wrapped into the combined alternation
+                        standalone.add(i);
+                    } else {
+                        regexPriorities.add(i);
+                    }
+            }
+        }
+        this.exact = exactIndex;
+        this.suffixes = root;
+
+        Pattern combinedPattern = null;
+        int[] groups = new int[regexPriorities.size()];
+        if (!regexPriorities.isEmpty()) {
+            final StringBuilder alternation = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < regexPriorities.size(); i++) {
+                final Pattern pattern = configurations.get(regexPriorities.get(i)).getHostPattern();
+                if (i > 0) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(pattern.pattern()).append(')');
+                groups[i] = group;
+                group += pattern.matcher("").groupCount() + 1;
+            }
+            try {
+                combinedPattern = Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE);
+            } catch (PatternSyntaxException e) {
+                log.warn("Cannot combine host patterns, falling back to sequential matching: {}", e.getMessage());
+                standalone.addAll(regexPriorities);
+                standalone.sort(Integer::compareTo);
+                regexPriorities.clear();
+                groups = new int[0];
+            }
+        }
+        this.combined = combinedPattern;
+        this.combinedGroups = groups;
+        this.combinedPriorities = toArray(regexPriorities);
+        this.standalonePriorities = toArray(standalone);
+        int min = NO_MATCH;
+        if (combinedPriorities.length > 0) {
+            min = combinedPriorities[0];
+        }
+        if (standalonePriorities.length > 0) {
+            min = Math.min(min, standalonePriorities[0]);
+        }
+        this.regexMinPriority = min;
+    }
+
+    public static HostMatcher compile(final Collection<DecoratorConfiguration> configurations) {
+        return new HostMatcher(ImmutableList.copyOf(configurations));
+    }
+
+    /**
+     * @return first configuration (in priority order) matching given host or {@link DecoratorConfiguration#INVALID}
+     */
+    public DecoratorConfiguration match(final String host) {
+        if (host == null) {
+            return DecoratorConfiguration.INVALID;
+        }
+        int best = NO_MATCH;
+        final Integer exactPriority = exact.get(host);
+        if (exactPriority != null) {
+            best = exactPriority;
+        }
+        best = Math.min(best, suffixes.match(host, best));
+        if (regexMinPriority < best) {
+            best = Math.min(best, matchRegex(host, best));
+        }
+        if (best == NO_MATCH) {
+            return DecoratorConfiguration.INVALID;
+        }
+        return configurations.get(best);
+    }
+
+    public List<DecoratorConfiguration> getConfigurations() {
+        return configurations;
+    }
+
+    public int size() {
+        return configurations.size();
+    }
+
+    private int matchRegex(final String host, final int best) {
+        int result = NO_MATCH;
+        if (combined != null && combinedPriorities[0] < best) {
+            final Matcher matcher = combined.matcher(host);
+            if (matcher.matches()) {
+                for (int i = 0; i < combinedGroups.length; i++) {
+                    if (matcher.start(combinedGroups[i]) != -1) {
+                        result = combinedPriorities[i];
+                        break;
+                    }
+                }
+            }
+        }
+        for (int priority : standalonePriorities) {
+            if (priority >= Math.min(best, result)) {
+                break;
+            }
+            if (configurations.get(priority).getHostPattern().matcher(host).matches()) {
+                result = priority;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Character trie of reversed suffixes, so {@code .*onehippo\.com} keeps its exact regex semantics.
+     */
+    private static final class SuffixNode {
+        private char[] keys = new char[0];
+        private SuffixNode[] children = new SuffixNode[0];
+        private int priority = NO_MATCH;
+
+        private void add(final String suffix, final int index) {
+            SuffixNode node = this;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.childOrCreate(suffix.charAt(i));
+            }
+            node.priority = Math.min(node.priority, index);
+        }
+
+        private int match(final String host, final int best) {
+            int result = priority;
+            SuffixNode node = this;
+            for (int i = host.length() - 1; i >= 0 && node != null && result > 0; i--) {
+                node = node.child(host.charAt(i));
+                if (node != null && node.priority < result) {
+                    result = node.priority;
+                }
+            }
+            return Math.min(result, best);
+        }
+
+        private SuffixNode child(final char c) {
+            final int position = Arrays.binarySearch(keys, c);
+            return position < 0 ? null : children[position];
+        }
+
+        private SuffixNode childOrCreate(final char c) {
+            final int position = Arrays.binarySearch(keys, c);
+            if (position >= 0) {
+                return children[position];
+            }
+            final int insert = -position - 1;
+            final char[] newKeys = new char[keys.length + 1];
+            final SuffixNode[] newChildren = new SuffixNode[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newKeys[insert] = c;
+            newChildren[insert] = new SuffixNode();
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insert];
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Locale;
+
+/**
+ * Normalizes a host into its resolution cache key, so {@code Example.com}, {@code example.com:443},
+ * {@code example.com.} and {@code example.com, proxy.internal} share one key: {@code example.com}. Only the default
+ * ports 80 and 443 are removed (also after a bracketed IPv6 address), other ports are kept, so host patterns
+ * including a port (e.g. {@code localhost:8080}) keep matching.
+ * <p>
+ * An already normalized host is returned as is, without allocating. Normalized copies are interned, so equal keys
+ * share one instance.
+ */
+public final class HostNormalizer {
+
+    private static final Interner<String> KEYS = Interners.newWeakInterner();
+
+    private HostNormalizer() {
+    }
+
+    public static String normalize(final String host) {
+        if (host == null || isNormalized(host)) {
+            return host;
+        }
+        String key = HostExtractor.firstHop(host).toLowerCase(Locale.ENGLISH);
+        key = stripPort(key);
+        while (key.endsWith(".")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return KEYS.intern(key);
+    }
+
+    private static boolean isNormalized(final String host) {
+        final int length = host.length();
+        if (length == 0) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = host.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || c == ',' || c <= ' ' || c > '~') {
+                return false;
+            }
+        }
+        return host.charAt(length - 1) != '.' && portSeparator(host) < 0;
+    }
+
+    private static String stripPort(final String host) {
+        final int colon = portSeparator(host);
+        if (colon < 0) {
+            return host;
+        }
+        String stripped = host.substring(0, colon);
+        while (stripped.endsWith(".")) {
+            stripped = stripped.substring(0, stripped.length() - 1);
+        }
+        return stripped;
+    }
+
+    /**
+     * @return index of the colon separating a default port (80 or 443) from the host, or -1 if there is none
+     */
+    private static int portSeparator(final String host) {
+        final int colon = host.lastIndexOf(':');
+        if (colon <= 0 || !isDefaultPort(host, colon + 1)) {
+            return -1;
+        }
+        return isPortSeparator(host, colon) ? colon : -1;
+    }
+
+    private static boolean isDefaultPort(final String host, final int start) {
+        final int length = host.length() - start;
+        return (length == 2 && host.startsWith("80", start)) || (length == 3 && host.startsWith("443", start));
+    }
+
+    /**
+     * @return true if the colon at given index separates a port, false if it is part of an (unbracketed) IPv6 address
+     */
+    private static boolean isPortSeparator(final String host, final int colon) {
+        if (host.charAt(0) == '[') {
+            return colon > 0 && host.charAt(colon - 1) == ']';
+        }
+        return host.indexOf(':') == colon;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+/**
+ * Cached result of resolving a host, stamped with the {@link ConfigurationSnapshot#getVersion() snapshot version}
+ * it was resolved against and the time it was resolved at. Entries of an older version are resolved again on their
+ * next lookup, so a reload never needs to invalidate the whole cache; entries due for a refresh are resolved again in
+ * the background.
+ */
+public final class HostResolution {
+
+    private final DecoratorConfiguration configuration;
+    private final long version;
+    private final long resolvedAt = System.nanoTime();
+
+    public HostResolution(final DecoratorConfiguration configuration, final long version) {
+        this.configuration = configuration;
+        this.version = version;
+    }
+
+    public DecoratorConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isCurrent(final long currentVersion) {
+        return version == currentVersion;
+    }
+
+    /**
+     * @return true if resolved less than given number of nanoseconds ago
+     */
+    public boolean isFresh(final long refreshAfterInNanos) {
+        return System.nanoTime() - resolvedAt < refreshAfterInNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HostResolution{" +
+                "configuration=" + configuration +
+                ", version=" + version +
+                '}';
+    }
+}
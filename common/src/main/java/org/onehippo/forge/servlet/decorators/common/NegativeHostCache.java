@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded set of hosts that matched no configuration, kept apart from the {@link ResolutionCache} so unmatched
+ * (possibly client forged) host headers never evict resolved hosts. Once full, the oldest host is dropped. Like
+ * {@link HostResolution}, hosts are remembered per configuration snapshot version.
+ */
+public class NegativeHostCache {
+
+    private final Map<String, Long> hosts = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final long maxSize;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public NegativeHostCache(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return true if given host is known not to match any configuration of given snapshot version
+     */
+    public boolean contains(final String host, final long version) {
+        final Long unmatchedIn = hosts.get(host);
+        if (unmatchedIn == null || unmatchedIn != version) {
+            // an entry of an older version is kept: add() overwrites it in place, keeping its eviction position
+            return false;
+        }
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * Remembers given host as unmatched in given snapshot version, replacing the version it was unmatched in before.
+     * Only a new host is queued for eviction, so every cached host is queued once.
+     */
+    public void add(final String host, final long version) {
+        if (hosts.put(host, version) != null) {
+            return;
+        }
+        insertionOrder.offer(host);
+        while (hosts.size() > maxSize) {
+            final String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            if (hosts.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    public void clear() {
+        hosts.clear();
+        insertionOrder.clear();
+    }
+
+    public long size() {
+        return hosts.size();
+    }
+
+    /**
+     * @return number of lookups answered as unmatched by this cache
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
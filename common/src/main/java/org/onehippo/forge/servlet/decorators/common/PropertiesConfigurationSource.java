@@ -0,0 +1,278 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the decorator configuration from a properties file, or a classpath resource when the location starts with
+ * {@code classpath:}. Files are watched for changes, classpath resources are read once. Module settings use the
+ * property names of the module configuration node, configurations are prefixed with their name:
+ * <pre>
+ * hostheaders=X-Forwarded-Host, Host
+ * configurations=local, onehippo
+ * local.hostnames.0=localhost
+ * local.hostnames.1=127.0.0.1
+ * local.contextpaths.0=/site
+ * local.contextpaths.1=/site
+ * onehippo.hostnames=.*onehippo\\.com
+ * onehippo.contextpaths=/
+ * onehippo.enabled=true
+ * </pre>
+ * Host names and context paths are listed with indexed keys (a key without index holds a single value), as a host
+ * name pattern may contain commas, e.g. {@code [a-z]{2,8}\\.example\\.com}. Other multiple values are comma separated.
+ * Configurations are matched in the order of the {@code configurations} property, or by name if it is missing.
+ */
+public class PropertiesConfigurationSource implements ConfigurationSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PropertiesConfigurationSource.class);
+
+    public static final String CLASSPATH_PREFIX = "classpath:";
+    public static final String CONFIG_CONFIGURATIONS = "configurations";
+
+    private static final Splitter VALUES = Splitter.on(',').trimResults();
+    private static final String HOSTNAMES_SUFFIX = '.' + DecoratorConst.CONFIG_HOSTNAME;
+
+    private final String location;
+    private final Path file;
+    private WatchService watchService;
+
+    /**
+     * @param location file path or {@code classpath:} resource name
+     */
+    public PropertiesConfigurationSource(final String location) {
+        this.location = location;
+        this.file = location.startsWith(CLASSPATH_PREFIX) ? null : Paths.get(location).toAbsolutePath();
+    }
+
+    @Override
+    public ConfigurationData read() throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = open()) {
+            if (in == null) {
+                log.warn("Decorator configuration {} not found", location);
+                return null;
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return parse(properties);
+    }
+
+    private InputStream open() throws IOException {
+        if (file == null) {
+            final String resource = location.substring(CLASSPATH_PREFIX.length());
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader() == null
+                    ? PropertiesConfigurationSource.class.getClassLoader() : Thread.currentThread().getContextClassLoader();
+            return classLoader.getResourceAsStream(resource.startsWith("/") ? resource.substring(1) : resource);
+        }
+        return Files.isReadable(file) ? Files.newInputStream(file) : null;
+    }
+
+    @Override
+    public synchronized void start(final Runnable changeListener) {
+        if (file == null || watchService != null) {
+            return;
+        }
+        final Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            log.warn("Cannot watch {}, changes are not picked up: no parent directory", file);
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("Cannot watch {}, changes are not picked up: {}", file, e.toString());
+            return;
+        }
+        final WatchService watcher = watchService;
+        final Thread thread = new Thread(() -> watch(watcher, changeListener), "servlet-decorators-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(final WatchService watcher, final Runnable changeListener) {
+        try {
+            while (true) {
+                final WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // editors often save by replacing the file, so creation counts as well:
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+                }
+                if (changed) {
+                    log.debug("Decorator configuration {} changed", file);
+                    changeListener.run();
+                }
+                if (!key.reset()) {
+                    log.warn("Stopped watching {}, its directory is no longer accessible", file);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Stopped watching {}", file);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Error closing watch service of {}: {}", file, e.toString());
+            }
+            watchService = null;
+        }
+    }
+
+    private ConfigurationData parse(final Properties properties) {
+        final Map<String, Collection<DecoratorConfiguration>> nodeConfigurations = new LinkedHashMap<>();
+        for (String name : configurationNames(properties)) {
+            nodeConfigurations.put(name, parse(properties, name));
+        }
+        final CacheSettings defaults = CacheSettings.DEFAULT;
+        final CacheSettings cacheSettings = new CacheSettings(
+                CacheSettings.parsePolicy(properties.getProperty(DecoratorConst.CONFIG_CACHE_POLICY)),
+                getLong(properties, DecoratorConst.CONFIG_CACHE_MAX_SIZE, defaults.getMaxSize()),
+                getLong(properties, DecoratorConst.CONFIG_CACHE_EXPIRES, defaults.getExpiresInSeconds()),
+                getLong(properties, DecoratorConst.CONFIG_NEGATIVE_CACHE_MAX_SIZE, defaults.getNegativeMaxSize()),
+                getLong(properties, DecoratorConst.CONFIG_CACHE_REFRESH_AFTER, 0));
+        final String delay = properties.getProperty(DecoratorConst.CONFIG_RELOAD_DELAY);
+        final Long reloadDelay = Strings.isNullOrEmpty(delay) ? null : getLong(properties, DecoratorConst.CONFIG_RELOAD_DELAY, DecoratorConst.RELOAD_DELAY_IN_MILLIS);
+        return new ConfigurationData(nodeConfigurations, cacheSettings,
+                values(properties, DecoratorConst.CONFIG_HOST_HEADERS), reloadDelay);
+    }
+
+    private static Collection<String> configurationNames(final Properties properties) {
+        final List<String> names = values(properties, CONFIG_CONFIGURATIONS);
+        if (!names.isEmpty()) {
+            return new LinkedHashSet<>(names);
+        }
+        final Set<String> sorted = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(HOSTNAMES_SUFFIX)) {
+                sorted.add(key.substring(0, key.length() - HOSTNAMES_SUFFIX.length()));
+            } else {
+                final int suffix = key.lastIndexOf(HOSTNAMES_SUFFIX + '.');
+                if (suffix > 0 && isIndex(key.substring(suffix + HOSTNAMES_SUFFIX.length() + 1))) {
+                    sorted.add(key.substring(0, suffix));
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private static Set<DecoratorConfiguration> parse(final Properties properties, final String name) {
+        final String prefix = name + '.';
+        final List<String> hosts = indexedValues(properties, prefix + DecoratorConst.CONFIG_HOSTNAME);
+        final List<String> contextPaths = indexedValues(properties, prefix + DecoratorConst.CONFIG_CONTEXT_PATHS);
+        final Map<String, String> mappings = new LinkedHashMap<>();
+        if (hosts.size() != contextPaths.size()) {
+            log.error("Invalid configuration {}: number of host names doesn't match number of context paths: {} vs {}",
+                    name, hosts.size(), contextPaths.size());
+        } else {
+            for (int i = 0; i < hosts.size(); i++) {
+                mappings.putIfAbsent(hosts.get(i), contextPaths.get(i));
+            }
+        }
+        final String enabled = properties.getProperty(prefix + DecoratorConst.CONFIG_ENABLED);
+        return DecoratorConfiguration.Builder.start()
+                .enabled(Strings.isNullOrEmpty(enabled) || Boolean.parseBoolean(enabled.trim()))
+                .hostHeader(properties.getProperty(prefix + DecoratorConst.CONFIG_HEADER_HOST, DecoratorConst.HEADER_X_FORWARDED_HOST).trim())
+                .hosts(mappings)
+                .build();
+    }
+
+    /**
+     * @return comma separated values
+     */
+    private static List<String> values(final Properties properties, final String key) {
+        final String value = properties.getProperty(key);
+        return Strings.isNullOrEmpty(value) || value.trim().isEmpty() ? Collections.emptyList() : VALUES.splitToList(value);
+    }
+
+    /**
+     * @return the value of given key, or else the values of its indexed keys ({@code key.0}, {@code key.1}, ...)
+     * up to the first missing index
+     */
+    private static List<String> indexedValues(final Properties properties, final String key) {
+        final String value = properties.getProperty(key);
+        if (value != null) {
+            return Collections.singletonList(value.trim());
+        }
+        final List<String> values = new ArrayList<>();
+        String indexed;
+        while ((indexed = properties.getProperty(key + '.' + values.size())) != null) {
+            values.add(indexed.trim());
+        }
+        return values;
+    }
+
+    private static boolean isIndex(final String value) {
+        return !value.isEmpty() && value.chars().allMatch(Character::isDigit);
+    }
+
+    private static long getLong(final Properties properties, final String key, final long defaultValue) {
+        final String value = properties.getProperty(key);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for {}: {}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PropertiesConfigurationSource{" + location + '}';
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Striped, lossy buffer of accessed keys, so request threads record accesses without writing to the shared
+ * {@link FrequencySketch}. Threads are spread over the stripes by thread id; a full stripe drops the access, which
+ * only makes a frequency estimate slightly lower. The buffer is drained by one thread at a time.
+ */
+final class ReadBuffer {
+
+    private static final int STRIPE_SIZE = 16;
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    ReadBuffer() {
+        final int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * @return false if the stripe of the current thread is full, i.e. the buffer should be drained
+     */
+    boolean record(final String key) {
+        final long id = Thread.currentThread().getId();
+        final int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return stripes[(h ^ (h >>> 16)) & mask].offer(key);
+    }
+
+    /**
+     * Must not be called concurrently.
+     */
+    void drainTo(final Consumer<String> consumer) {
+        for (Stripe stripe : stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    private static final class Stripe {
+        private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        private volatile long reads;
+
+        private boolean offer(final String key) {
+            final long write = writes.get();
+            if (write - reads >= STRIPE_SIZE) {
+                return false;
+            }
+            if (writes.compareAndSet(write, write + 1)) {
+                buffer.lazySet((int) write & STRIPE_MASK, key);
+            }
+            // lost the race with another thread of this stripe: dropped, like a full stripe
+            return true;
+        }
+
+        private void drainTo(final Consumer<String> consumer) {
+            long read = reads;
+            final long write = writes.get();
+            while (read < write) {
+                final int index = (int) read & STRIPE_MASK;
+                final String key = buffer.get(index);
+                if (key == null) {
+                    // reserved but not yet written
+                    break;
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(key);
+                read++;
+            }
+            reads = read;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Background refreshes of the stale entries of a {@link ResolutionCache}, at most one per host at a time.
+ */
+final class RefreshAhead<V> {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshAhead.class);
+
+    /**
+     * Replaces a refreshed entry.
+     */
+    interface Replacer<V> {
+        /**
+         * @param value new value, or null to remove the entry
+         */
+        void replace(String host, V stale, V value);
+    }
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Replacer<V> replacer;
+    private final LongAdder refreshes = new LongAdder();
+
+    RefreshAhead(final Replacer<V> replacer) {
+        this.replacer = replacer;
+    }
+
+    /**
+     * Resolves given host again on given executor, unless a refresh of it is running already. If the executor rejects
+     * it, the host is resolved on the calling thread.
+     */
+    void refresh(final String host, final V stale, final Function<String, V> resolver, final Executor executor) {
+        if (!refreshing.add(host)) {
+            return;
+        }
+        final Runnable refresh = () -> {
+            try {
+                refreshes.increment();
+                replacer.replace(host, stale, resolver.apply(host));
+            } finally {
+                refreshing.remove(host);
+            }
+        };
+        try {
+            executor.execute(refresh);
+        } catch (RejectedExecutionException e) {
+            log.debug("Refresh of {} rejected, refreshing on the calling thread: {}", host, e.getMessage());
+            refresh.run();
+        }
+    }
+
+    long getRefreshCount() {
+        return refreshes.sum();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ends a filter scope (e.g. restores request state changed for the rest of the chain) when the chain returns or,
+ * if the request went asynchronous, when the asynchronous processing completes.
+ */
+public final class RequestScope {
+
+    private RequestScope() {
+    }
+
+    /**
+     * @param request request the chain was invoked with
+     * @param end     restores the state, run exactly once
+     */
+    public static void end(final ServletRequest request, final Runnable end) {
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new EndListener(end));
+        } else {
+            end.run();
+        }
+    }
+
+    private static final class EndListener implements AsyncListener {
+        private final Runnable end;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private EndListener(final Runnable end) {
+            this.end = end;
+        }
+
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                end.run();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            end();
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            end();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            end();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // asynchronous processing restarted (e.g. from an async dispatch), listeners have to register again:
+            if (!ended.get() && event.getAsyncContext() != null) {
+                event.getAsyncContext().addListener(this);
+            }
+        }
+    }
+}
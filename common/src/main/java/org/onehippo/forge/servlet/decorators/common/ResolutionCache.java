@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache of host resolution results, see {@link CacheSettings} for available implementations.
+ */
+public interface ResolutionCache<V> {
+
+    /**
+     * @return cached value or null if not present (or expired)
+     */
+    V getIfPresent(String host);
+
+    void put(String host, V value);
+
+    /**
+     * Returns the cached value if it is accepted by {@code current}, otherwise resolves a new one. A rejected (stale)
+     * value is replaced atomically, so concurrent lookups of the same stale host share one resolution.
+     *
+     * @param resolver returns the value to cache, or null if nothing should be cached
+     * @return cached or resolved value, null if the resolver returned null
+     */
+    V get(String host, Predicate<V> current, Function<String, V> resolver);
+
+    /**
+     * Refresh-ahead variant of {@link #get(String, Predicate, Function)}: a value rejected by {@code current} is
+     * resolved again right away, like {@link #get(String, Predicate, Function)} does. A current value rejected by
+     * {@code fresh} (e.g. because of its age) is still returned, while it is resolved again on {@code refresher}, one
+     * refresh per host at a time.
+     *
+     * @param resolver returns the value to cache, or null if nothing should be cached (a refresh then removes the
+     *                 value)
+     * @return cached or resolved value, null if the resolver returned null
+     */
+    V getRefreshing(String host, Predicate<V> current, Predicate<V> fresh, Function<String, V> resolver, Executor refresher);
+
+    void invalidateAll();
+
+    long size();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * @return number of background refreshes of stale values
+     */
+    long getRefreshCount();
+}
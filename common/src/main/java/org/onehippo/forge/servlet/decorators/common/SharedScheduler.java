@@ -0,0 +1,310 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background scheduler shared by all filters and configuration loaders of a web application, for warm-up, reload
+ * and refresh work. It is reference counted: every owner {@link #acquire(boolean) acquires} it once and
+ * {@link #release() releases} it when destroyed, the threads are stopped when the last owner released it.
+ * <p>
+ * The number of queued (including delayed) tasks is bounded by {@link DecoratorConst#SCHEDULER_MAX_QUEUED}, further
+ * tasks are rejected with a {@link RejectedExecutionException}. Tasks failing with an exception are logged, periodic
+ * tasks keep running.
+ */
+public final class SharedScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedScheduler.class);
+
+    private static SharedScheduler instance;
+    private static int references;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final int maxQueued;
+    // reserved before submitting, released when a task starts running (periodic tasks: when cancelled)
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private SharedScheduler(final int threads, final int maxQueued, final boolean virtualThreads) {
+        this.maxQueued = maxQueued;
+        executor = new QueueBoundExecutor(threads, DaemonThreads.factory("servlet-decorators-scheduler", virtualThreads));
+        // debounced reloads get cancelled a lot, don't keep them queued until their delay expires:
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * @param virtualThreads true to run the tasks on virtual threads (Java 21 and later), only applies if the scheduler
+     *                       is started by this call
+     * @return the shared scheduler, started if not running
+     */
+    public static synchronized SharedScheduler acquire(final boolean virtualThreads) {
+        if (instance == null) {
+            instance = new SharedScheduler(DecoratorConst.SCHEDULER_THREADS, DecoratorConst.SCHEDULER_MAX_QUEUED, virtualThreads);
+            log.debug("Started shared scheduler");
+        }
+        references++;
+        return instance;
+    }
+
+    /**
+     * @return the running scheduler or null if nobody acquired it
+     */
+    public static synchronized SharedScheduler current() {
+        return instance;
+    }
+
+    /**
+     * Releases one reference, stopping the scheduler (and cancelling its tasks) if it was the last one. Owners must
+     * release at most once per {@link #acquire(boolean)}.
+     */
+    public void release() {
+        synchronized (SharedScheduler.class) {
+            if (instance != this) {
+                return;
+            }
+            if (--references > 0) {
+                return;
+            }
+            instance = null;
+        }
+        executor.shutdownNow();
+        log.debug("Stopped shared scheduler");
+    }
+
+    public void execute(final Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        final Task task = task(command, unit.toNanos(delay), 0);
+        try {
+            return executor.schedule(task, delay, unit);
+        } catch (RejectedExecutionException e) {
+            rejected();
+            throw e;
+        }
+    }
+
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+        final Task task = task(command, unit.toNanos(initialDelay), unit.toNanos(delay));
+        try {
+            return executor.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+        } catch (RejectedExecutionException e) {
+            rejected();
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves a place in the queue for a new task.
+     */
+    private Task task(final Runnable command, final long delayNanos, final long periodNanos) {
+        if (executor.isShutdown()) {
+            rejectedTasks.increment();
+            throw new RejectedExecutionException("Shared scheduler is stopped");
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            rejected();
+            throw new RejectedExecutionException("Shared scheduler queue is full (" + maxQueued + " tasks)");
+        }
+        return new Task(command, System.nanoTime() + delayNanos, periodNanos);
+    }
+
+    private void rejected() {
+        queued.decrementAndGet();
+        rejectedTasks.increment();
+    }
+
+    /**
+     * @return number of tasks waiting to run, including delayed and periodic tasks
+     */
+    public int getQueueSize() {
+        return Math.max(0, queued.get());
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return number of task runs (a periodic task counts once per run)
+     */
+    public long getTaskCount() {
+        return tasks.sum();
+    }
+
+    public long getFailedTaskCount() {
+        return failedTasks.sum();
+    }
+
+    public long getRejectedTaskCount() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * @return average time between the moment tasks were due and started running
+     */
+    public double getAverageLatencyInMicros() {
+        final long count = tasks.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latencyNanos.sum()) / (double) count;
+    }
+
+    public long getMaxLatencyInMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+    }
+
+    /**
+     * Releases the queue place of a task once it starts running or is cancelled.
+     */
+    private final class QueueBoundExecutor extends ScheduledThreadPoolExecutor {
+
+        private QueueBoundExecutor(final int threads, final ThreadFactory threadFactory) {
+            super(threads, threadFactory);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Runnable runnable, final RunnableScheduledFuture<V> task) {
+            return new QueuedTask<>(task, this);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Callable<V> callable, final RunnableScheduledFuture<V> task) {
+            return new QueuedTask<>(task, this);
+        }
+    }
+
+    private final class QueuedTask<V> implements RunnableScheduledFuture<V> {
+        private final RunnableScheduledFuture<V> task;
+        private final ScheduledThreadPoolExecutor owner;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private QueuedTask(final RunnableScheduledFuture<V> task, final ScheduledThreadPoolExecutor owner) {
+            this.task = task;
+            this.owner = owner;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                queued.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!task.isPeriodic()) {
+                release();
+            }
+            task.run();
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = task.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                release();
+                // the executor only removes its own (undecorated) tasks on cancel:
+                owner.remove(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return task.compareTo(other instanceof QueuedTask ? ((QueuedTask<?>) other).task : other);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final Runnable command;
+        private final long periodNanos;
+        private volatile long due;
+
+        private Task(final Runnable command, final long due, final long periodNanos) {
+            this.command = command;
+            this.due = due;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public void run() {
+            final long latency = Math.max(0, System.nanoTime() - due);
+            tasks.increment();
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                failedTasks.increment();
+                log.warn("Background task failed", e);
+            } finally {
+                due = System.nanoTime() + periodNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local copy of the last configuration loaded from the repository, so a restarted node can decorate requests before
+ * the repository is available. Versioned binary format, checked with a CRC32 checksum; the file is written to a
+ * temporary file first and then moved into place, so readers never see a partial file.
+ */
+public final class SnapshotFile {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotFile.class);
+
+    private static final int MAGIC = 0x53464453;
+    private static final short FORMAT_VERSION = 1;
+
+    private SnapshotFile() {
+    }
+
+    public static void write(final ConfigurationSnapshot snapshot, final Path file) throws IOException {
+        final Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        final Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            final CRC32 checksum = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), checksum))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                out.writeLong(snapshot.getLoadDate().getTime());
+                writeCacheSettings(out, snapshot.getCacheSettings());
+                out.writeInt(snapshot.getHostHeaders().size());
+                for (String header : snapshot.getHostHeaders()) {
+                    out.writeUTF(header);
+                }
+                out.writeInt(snapshot.getNodeConfigurations().size());
+                for (Map.Entry<String, List<DecoratorConfiguration>> entry : snapshot.getNodeConfigurations().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeConfigurations(out, entry.getValue());
+                }
+                out.flush();
+                // the checksum covers everything written before it:
+                out.writeLong(checksum.getValue());
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return snapshot with version {@link ConfigurationSnapshot#RESTORED_VERSION} or null if given file does not
+     * exist or cannot be read
+     */
+    public static ConfigurationSnapshot read(final Path file) {
+        if (file == null || !Files.isReadable(file)) {
+            return null;
+        }
+        final CRC32 checksum = new CRC32();
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), checksum);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                log.warn("Not a configuration snapshot file: {}", file);
+                return null;
+            }
+            final short format = in.readShort();
+            if (format != FORMAT_VERSION) {
+                log.warn("Unsupported configuration snapshot format {} in {}", format, file);
+                return null;
+            }
+            final Date loadDate = new Date(in.readLong());
+            final CacheSettings cacheSettings = readCacheSettings(in);
+            final int headerCount = in.readInt();
+            final List<String> hostHeaders = new ArrayList<>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                hostHeaders.add(in.readUTF());
+            }
+            final int nodeCount = in.readInt();
+            final Map<String, Set<DecoratorConfiguration>> nodeConfigurations = new LinkedHashMap<>();
+            for (int i = 0; i < nodeCount; i++) {
+                nodeConfigurations.put(in.readUTF(), readConfigurations(in));
+            }
+            final long expected = checksum.getValue();
+            if (in.readLong() != expected) {
+                log.warn("Checksum mismatch, ignoring configuration snapshot file {}", file);
+                return null;
+            }
+            return new ConfigurationSnapshot(ConfigurationSnapshot.RESTORED_VERSION, nodeConfigurations, cacheSettings,
+                    hostHeaders, loadDate);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read configuration snapshot file {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    private static void writeCacheSettings(final DataOutputStream out, final CacheSettings settings) throws IOException {
+        out.writeUTF(settings.getPolicy().name());
+        out.writeLong(settings.getMaxSize());
+        out.writeLong(settings.getExpiresInSeconds());
+        out.writeLong(settings.getNegativeMaxSize());
+        out.writeLong(settings.getRefreshAfterInSeconds());
+    }
+
+    private static CacheSettings readCacheSettings(final DataInputStream in) throws IOException {
+        final CacheSettings.Policy policy = CacheSettings.parsePolicy(in.readUTF());
+        final long maxSize = in.readLong();
+        final long expiresInSeconds = in.readLong();
+        final long negativeMaxSize = in.readLong();
+        final long refreshAfterInSeconds = in.readLong();
+        return new CacheSettings(policy, maxSize, expiresInSeconds, negativeMaxSize, refreshAfterInSeconds);
+    }
+
+    /**
+     * All configurations of one node share the enabled flag and host header of that node.
+     */
+    private static void writeConfigurations(final DataOutputStream out, final Collection<DecoratorConfiguration> configurations) throws IOException {
+        out.writeInt(configurations.size());
+        if (configurations.isEmpty()) {
+            return;
+        }
+        final DecoratorConfiguration first = configurations.iterator().next();
+        out.writeBoolean(first.isEnabled());
+        writeNullable(out, first.getHostHeader());
+        for (DecoratorConfiguration configuration : configurations) {
+            out.writeUTF(configuration.getHostPattern().pattern());
+            writeNullable(out, configuration.getContextPath());
+        }
+    }
+
+    private static Set<DecoratorConfiguration> readConfigurations(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final Map<String, String> mappings = new LinkedHashMap<>();
+        if (count == 0) {
+            return DecoratorConfiguration.Builder.start().hosts(mappings).build();
+        }
+        final boolean enabled = in.readBoolean();
+        final String hostHeader = readNullable(in);
+        for (int i = 0; i < count; i++) {
+            mappings.put(in.readUTF(), readNullable(in));
+        }
+        return DecoratorConfiguration.Builder.start().enabled(enabled).hostHeader(hostHeader).hosts(mappings).build();
+    }
+
+    private static void writeNullable(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache with TinyLFU admission: once full, a new host is only admitted if it was requested more often than
+ * the oldest cached host (which is otherwise given a second chance). Bursts of one-off hosts can therefore not flush
+ * the frequently used ones.
+ * <p>
+ * Reads are lock-free and don't write shared state: accesses are recorded in a striped {@link ReadBuffer}, which is
+ * drained into the frequency sketch on the write path (or once a stripe is full) under the eviction lock. Concurrent
+ * misses of one host share one resolution.
+ */
+public class TinyLfuResolutionCache<V> implements ResolutionCache<V> {
+
+    private final ConcurrentHashMap<String, Entry<V>> map = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    private final ConcurrentHashMap<String, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final long maxSize;
+    private final long expiresInNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final RefreshAhead<V> refreshAhead = new RefreshAhead<>(this::replace);
+
+    public TinyLfuResolutionCache(final long maxSize, final long expiresInSeconds) {
+        this.maxSize = maxSize;
+        this.expiresInNanos = TimeUnit.SECONDS.toNanos(expiresInSeconds);
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    @Override
+    public V getIfPresent(final String host) {
+        record(host);
+        final Entry<V> entry = map.get(host);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (expired(entry)) {
+            if (remove(host, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    @Override
+    public V get(final String host, final Predicate<V> current, final Function<String, V> resolver) {
+        record(host);
+        final Entry<V> entry = map.get(host);
+        if (entry != null && !expired(entry) && current.test(entry.value)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return load(host, current, resolver);
+    }
+
+    /**
+     * Resolves a missing or outdated host, concurrent misses of the same host wait for the first one. New hosts are
+     * inserted through {@link #put(String, Object)}, so they are subject to admission and the size bound.
+     */
+    private V load(final String host, final Predicate<V> current, final Function<String, V> resolver) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> running = loading.putIfAbsent(host, future);
+        if (running != null) {
+            try {
+                final V value = running.join();
+                if (value == null || current.test(value)) {
+                    return value;
+                }
+            } catch (CompletionException e) {
+                // resolving failed for the other thread, try again for this one
+            }
+            return resolver.apply(host);
+        }
+        try {
+            final Entry<V> entry = map.get(host);
+            if (entry != null && !expired(entry) && current.test(entry.value)) {
+                // loaded by a flight that ended just before this one started
+                future.complete(entry.value);
+                return entry.value;
+            }
+            final V value = resolver.apply(host);
+            if (value != null) {
+                put(host, value);
+            } else if (entry != null) {
+                remove(host, entry);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(host, future);
+        }
+    }
+
+    @Override
+    public V getRefreshing(final String host, final Predicate<V> current, final Predicate<V> fresh,
+                           final Function<String, V> resolver, final Executor refresher) {
+        final V value = get(host, current, resolver);
+        if (value != null && !fresh.test(value)) {
+            refreshAhead.refresh(host, value, resolver, refresher);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the entry of given host if it still holds the stale value, the host keeps its eviction position.
+     */
+    private void replace(final String host, final V stale, final V value) {
+        if (value != null) {
+            map.computeIfPresent(host, (key, entry) -> entry.value != stale ? entry : new Entry<>(value));
+            return;
+        }
+        final Entry<V> entry = map.get(host);
+        if (entry != null && entry.value == stale) {
+            remove(host, entry);
+        }
+    }
+
+    /**
+     * Removes given entry of given host, along with its eviction position: the map and the insertion order are only
+     * changed together under the eviction lock, so every cached host is queued exactly once.
+     *
+     * @return true if the entry was removed
+     */
+    private boolean remove(final String host, final Entry<V> entry) {
+        evictionLock.lock();
+        try {
+            if (!map.remove(host, entry)) {
+                return false;
+            }
+            insertionOrder.remove(host);
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(final String host, final V value) {
+        final Entry<V> entry = new Entry<>(value);
+        if (map.replace(host, entry) != null) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            drainReads();
+            while (map.size() >= maxSize) {
+                final String victim = insertionOrder.poll();
+                if (victim == null) {
+                    break;
+                }
+                if (!map.containsKey(victim)) {
+                    continue;
+                }
+                if (sketch.frequency(host) <= sketch.frequency(victim)) {
+                    // reject candidate, victim gets a second chance
+                    insertionOrder.offer(victim);
+                    return;
+                }
+                map.remove(victim);
+                evictions.increment();
+            }
+            if (map.put(host, entry) == null) {
+                insertionOrder.offer(host);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void record(final String host) {
+        if (!readBuffer.record(host) && evictionLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Must hold the eviction lock.
+     */
+    private void drainReads() {
+        readBuffer.drainTo(sketch::increment);
+    }
+
+    private boolean expired(final Entry<V> entry) {
+        return System.nanoTime() - entry.created > expiresInNanos;
+    }
+
+    @Override
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            map.clear();
+            insertionOrder.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshAhead.getRefreshCount();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long created = System.nanoTime();
+
+        private Entry(final V value) {
+            this.value = value;
+        }
+    }
+}
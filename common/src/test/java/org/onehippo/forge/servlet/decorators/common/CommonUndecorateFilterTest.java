@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CommonUndecorateFilterTest {
+
+    private final CommonUndecorateFilter filter = new CommonUndecorateFilter() {
+    };
+    private final HttpServletRequest original = new MockRequest("/site/news", "/site").request();
+    private final HippoDecoratedServletRequest decorated = new HippoDecoratedServletRequest(original,
+            DecoratorConfiguration.Builder.start().hosts(Collections.singletonMap("localhost", "/")).enabled(true)
+                    .build().iterator().next());
+
+    @Test
+    public void unwrapsDecoratedRequest() throws IOException, ServletException {
+        decorated.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED, decorated);
+        final AtomicReference<ServletRequest> passed = new AtomicReference<>();
+        filter.doFilter(decorated, null, (request, response) -> passed.set(request));
+        assertSame(original, passed.get());
+    }
+
+    @Test
+    public void servesOriginalThroughOtherWrappersDuringChain() throws IOException, ServletException {
+        decorated.setAttribute(DecoratorConst.REQUEST_ATTRIBUTE_DECORATED, decorated);
+        final HttpServletRequest wrapper = new HttpServletRequestWrapper(decorated);
+        final AtomicReference<String> uriInChain = new AtomicReference<>();
+
+        filter.doFilter(wrapper, null, (request, response) -> {
+            assertSame(wrapper, request);
+            uriInChain.set(((HttpServletRequest) request).getRequestURI());
+        });
+
+        assertEquals("/site/news", uriInChain.get());
+        assertEquals("/news", wrapper.getRequestURI());
+    }
+
+    @Test
+    public void passesUndecoratedRequestAsIs() throws IOException, ServletException {
+        final AtomicReference<ServletRequest> passed = new AtomicReference<>();
+        filter.doFilter(original, null, (request, response) -> passed.set(request));
+        assertSame(original, passed.get());
+    }
+}
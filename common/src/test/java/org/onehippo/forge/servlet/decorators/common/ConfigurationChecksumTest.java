@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationChecksumTest {
+
+    private static final String LOCATION = "/hippo:configuration/hippo:modules/servlet-filter-decorators-module/hippo:moduleconfig";
+
+    private final MockNode root = MockNode.root();
+    private final MockNode config = root.node(LOCATION);
+
+    @Test
+    public void changesWithConfigurationOnly() throws RepositoryException {
+        config.node("a").set(DecoratorConst.CONFIG_HOSTNAME, new String[]{"localhost"});
+        final String checksum = ConfigurationChecksum.compute(config.node());
+
+        config.set("jcr:primaryType", "hipposys:moduleconfig");
+        config.set(DecoratorConst.CONFIG_CHECKSUM, "ignored");
+        assertEquals(checksum, ConfigurationChecksum.compute(config.node()));
+
+        config.node("a").set(DecoratorConst.CONFIG_HOSTNAME, new String[]{"localhost", "127.0.0.1"});
+        assertFalse(checksum.equals(ConfigurationChecksum.compute(config.node())));
+    }
+
+    @Test
+    public void storedOutsideConfigurationOnlyWhenChanged() throws RepositoryException {
+        config.node("a").set(DecoratorConst.CONFIG_HOSTNAME, new String[]{"localhost"});
+        root.node("/hippo:configuration/hippo:temporary");
+        final Session session = root.session();
+        assertNull(ConfigurationChecksum.read(session, LOCATION));
+
+        assertTrue(ConfigurationChecksum.update(session, LOCATION));
+        assertEquals(ConfigurationChecksum.compute(config.node()), ConfigurationChecksum.read(session, LOCATION));
+        assertFalse(config.node().hasProperty(DecoratorConst.CONFIG_CHECKSUM));
+        assertNull(ConfigurationChecksum.read(session, "/other"));
+
+        assertFalse(ConfigurationChecksum.update(session, LOCATION));
+        config.node("a").set(DecoratorConst.CONFIG_HOSTNAME, new String[]{"example.com"});
+        assertTrue(ConfigurationChecksum.update(session, LOCATION));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DecoratorConfigurationLoaderTest {
+
+    private static final String LOCATION = "/hippo:configuration/hippo:modules/servlet-filter-decorators-module/hippo:moduleconfig";
+
+    private final MockNode root = MockNode.root();
+    private final MockNode config = root.node(LOCATION);
+
+    @Test
+    public void reparsesOnlyChangedConfigurationNodes() {
+        configure("a", "a\\.com", "/a");
+        configure("b", "b\\.com", "/b");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            final ConfigurationSnapshot first = loader.load();
+            assertEquals("/a", first.getHostMatcher().match("a.com").getContextPath());
+
+            configure("a", "a\\.org", "/a");
+            loader.invalidate(event(Event.PROPERTY_CHANGED, LOCATION + "/a/hostnames"));
+            final ConfigurationSnapshot second = loader.load();
+
+            assertEquals("/a", second.getHostMatcher().match("a.org").getContextPath());
+            assertSame(DecoratorConfiguration.INVALID, second.getHostMatcher().match("a.com"));
+            assertNotSame(first.getNodeConfigurations().get("a").get(0), second.getNodeConfigurations().get("a").get(0));
+            assertSame(first.getNodeConfigurations().get("b").get(0), second.getNodeConfigurations().get("b").get(0));
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void patchPicksUpAddedAndRemovedNodes() {
+        configure("a", "a\\.com", "/a");
+        configure("b", "b\\.com", "/b");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            loader.load();
+            config.remove("b");
+            loader.invalidate(event(Event.NODE_REMOVED, LOCATION + "/b"));
+            configure("c", "c\\.com", "/c");
+            loader.invalidate(event(Event.NODE_ADDED, LOCATION + "/c"));
+            final ConfigurationSnapshot patched = loader.load();
+
+            assertEquals("[a, c]", patched.getNodeConfigurations().keySet().toString());
+            assertSame(DecoratorConfiguration.INVALID, patched.getHostMatcher().match("b.com"));
+            assertEquals("/c", patched.getHostMatcher().match("c.com").getContextPath());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void moduleSettingChangeReloadsAll() {
+        configure("a", "a\\.com", "/a");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            assertEquals(CacheSettings.DEFAULT.getMaxSize(), loader.load().getCacheSettings().getMaxSize());
+            config.set(DecoratorConst.CONFIG_CACHE_MAX_SIZE, 5L);
+            loader.invalidate(event(Event.PROPERTY_CHANGED, LOCATION + "/" + DecoratorConst.CONFIG_CACHE_MAX_SIZE));
+            assertEquals(5, loader.load().getCacheSettings().getMaxSize());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void burstOfInvalidationsResultsInOneReload() throws InterruptedException {
+        configure("a", "a\\.com", "/a");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            loader.load();
+            loader.setReloadDelayInMillis(200);
+            for (int i = 0; i < 5; i++) {
+                loader.invalidate();
+            }
+            awaitReloads(loader, 2);
+
+            assertEquals(5, loader.getInvalidationCount());
+            assertEquals(4, loader.getCoalescedInvalidationCount());
+            assertEquals(1, loader.getReloadBatchCount());
+            assertEquals(2, loader.getReloadCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void continuousInvalidationsDontPostponeReloadForever() throws InterruptedException {
+        configure("a", "a\\.com", "/a");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            loader.load();
+            loader.setReloadDelayInMillis(50);
+            final long end = System.currentTimeMillis() + 50 * DecoratorConst.RELOAD_MAX_DELAY_FACTOR * 3;
+            while (System.currentTimeMillis() < end && loader.getReloadBatchCount() == 0) {
+                loader.invalidate();
+                Thread.sleep(10);
+            }
+            assertTrue("reload postponed past the maximum delay", loader.getReloadBatchCount() > 0);
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void unchangedChecksumSkipsReload() {
+        configure("a", "a\\.com", "/a");
+        stampChecksum("1");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            final ConfigurationSnapshot first = loader.load();
+            configure("a", "a\\.org", "/a");
+            loader.invalidate();
+            assertSame(first, loader.load());
+            assertEquals(1, loader.getSkippedReloadCount());
+
+            stampChecksum("2");
+            loader.invalidate();
+            assertEquals("/a", loader.load().getHostMatcher().match("a.org").getContextPath());
+            assertEquals(2, loader.getReloadCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void checksumOfOtherConfigurationIsIgnored() {
+        configure("a", "a\\.com", "/a");
+        stampChecksum("1");
+        root.node(DecoratorConst.CHECKSUM_LOCATION).set(DecoratorConst.CONFIG_CHECKSUM_LOCATION, "/other");
+        final DecoratorConfigurationLoader loader = loader();
+        try {
+            loader.load();
+            loader.invalidate();
+            loader.load();
+            assertEquals(0, loader.getSkippedReloadCount());
+            assertEquals(2, loader.getReloadCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    private void stampChecksum(final String checksum) {
+        root.node(DecoratorConst.CHECKSUM_LOCATION)
+                .set(DecoratorConst.CONFIG_CHECKSUM, checksum)
+                .set(DecoratorConst.CONFIG_CHECKSUM_LOCATION, LOCATION);
+    }
+
+    private void configure(final String name, final String host, final String contextPath) {
+        config.node(name)
+                .set(DecoratorConst.CONFIG_HOSTNAME, new String[]{host})
+                .set(DecoratorConst.CONFIG_CONTEXT_PATHS, new String[]{contextPath});
+    }
+
+    /**
+     * @return loader reading the mock repository, whose scheduled reloads don't run during a test: tests load
+     * synchronously
+     */
+    private DecoratorConfigurationLoader loader() {
+        final Session session = root.session();
+        final DecoratorConfigurationLoader loader = new DecoratorConfigurationLoader() {
+            @Override
+            protected Session getSession() {
+                return session;
+            }
+        };
+        loader.setConfigurationLocation(LOCATION);
+        loader.setReloadDelayInMillis(60000);
+        return loader;
+    }
+
+    private static void awaitReloads(final DecoratorConfigurationLoader loader, final long reloads) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while ((loader.getReloadCount() < reloads || loader.isReloadPending()) && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        // give a wrongly scheduled second reload the chance to run
+        Thread.sleep(300);
+    }
+
+    private static Event event(final int type, final String path) {
+        return (Event) Proxy.newProxyInstance(Event.class.getClassLoader(), new Class<?>[]{Event.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType":
+                            return type;
+                        case "getPath":
+                            return path;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
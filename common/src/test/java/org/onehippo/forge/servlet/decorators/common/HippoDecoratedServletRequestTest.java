@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class HippoDecoratedServletRequestTest {
+
+    @Test
+    public void decoratesRequestUriAndContextPath() {
+        assertEquals("/news", decorated("/site/news", "/site", "/").getRequestURI());
+        assertEquals("/news", decorated("/site/news", "/site", "").getRequestURI());
+        assertEquals("/intranet/news", decorated("/site/news", "/site", "/intranet").getRequestURI());
+        assertEquals("/site/news", decorated("/site/news", "/site", "/site").getRequestURI());
+        assertEquals("/intranet", decorated("/site/news", "/site", "/intranet").getContextPath());
+    }
+
+    @Test
+    public void decoratedUriIsComputedOncePerOriginalUri() {
+        final MockRequest original = new MockRequest("/site/news", "/site");
+        final HippoDecoratedServletRequest request = new HippoDecoratedServletRequest(original.request(), config("/intranet"));
+        final String uri = request.getRequestURI();
+        assertSame(uri, request.getRequestURI());
+
+        // e.g. forwarded: the wrapped request changes its URI
+        original.dispatch("/site/events", "/site");
+        assertEquals("/intranet/events", request.getRequestURI());
+    }
+
+    @Test
+    public void decoratesRequestUrl() {
+        final HippoDecoratedServletRequest request = decorated("/site/news", "/site", "/");
+        assertEquals("http://localhost/news", request.getRequestURL().toString());
+        // callers may modify the returned buffer
+        request.getRequestURL().append("?changed");
+        assertEquals("http://localhost/news", request.getRequestURL().toString());
+        assertNotSame(request.getRequestURL(), request.getRequestURL());
+    }
+
+    @Test
+    public void decoratesDispatchAttributesOfThisWebApplication() {
+        final MockRequest original = new MockRequest("/site/target", "/site");
+        final HttpServletRequest wrapped = original.request();
+        wrapped.setAttribute(RequestDispatcher.FORWARD_CONTEXT_PATH, "/site");
+        wrapped.setAttribute(RequestDispatcher.FORWARD_REQUEST_URI, "/site/news");
+        wrapped.setAttribute(RequestDispatcher.FORWARD_SERVLET_PATH, "/news");
+        wrapped.setAttribute(RequestDispatcher.INCLUDE_CONTEXT_PATH, "/other");
+        wrapped.setAttribute(RequestDispatcher.INCLUDE_REQUEST_URI, "/other/page");
+        final HippoDecoratedServletRequest request = new HippoDecoratedServletRequest(wrapped, config("/intranet"));
+
+        assertEquals("/intranet", request.getAttribute(RequestDispatcher.FORWARD_CONTEXT_PATH));
+        assertEquals("/intranet/news", request.getAttribute(RequestDispatcher.FORWARD_REQUEST_URI));
+        assertEquals("/news", request.getAttribute(RequestDispatcher.FORWARD_SERVLET_PATH));
+        assertEquals("/other", request.getAttribute(RequestDispatcher.INCLUDE_CONTEXT_PATH));
+        assertEquals("/other/page", request.getAttribute(RequestDispatcher.INCLUDE_REQUEST_URI));
+    }
+
+    @Test
+    public void servesOriginalWhenConfigurationIsDisabled() {
+        final DecoratorConfiguration disabled = DecoratorConfiguration.Builder.start()
+                .hosts(Collections.singletonMap("localhost", "/intranet")).enabled(false).build().iterator().next();
+        final HippoDecoratedServletRequest request = new HippoDecoratedServletRequest(
+                new MockRequest("/site/news", "/site").request(), disabled);
+        assertEquals("/site/news", request.getRequestURI());
+        assertEquals("/site", request.getContextPath());
+    }
+
+    private static HippoDecoratedServletRequest decorated(final String uri, final String contextPath, final String decoratedContextPath) {
+        return new HippoDecoratedServletRequest(new MockRequest(uri, contextPath).request(), config(decoratedContextPath));
+    }
+
+    private static DecoratorConfiguration config(final String contextPath) {
+        return DecoratorConfiguration.Builder.start()
+                .hosts(Collections.singletonMap("localhost", contextPath)).enabled(true).build().iterator().next();
+    }
+}
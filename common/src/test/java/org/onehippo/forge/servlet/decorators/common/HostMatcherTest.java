@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class HostMatcherTest {
+
+    @Test
+    public void classifiesLiteralSuffixAndRegexPatterns() {
+        assertClassified("localhost", DecoratorConfiguration.MatchType.EXACT, "localhost");
+        assertClassified("127\\.0\\.0\\.1", DecoratorConfiguration.MatchType.EXACT, "127.0.0.1");
+        assertClassified("^WWW\\.Example\\.com$", DecoratorConfiguration.MatchType.EXACT, "www.example.com");
+        assertClassified(".*onehippo\\.com", DecoratorConfiguration.MatchType.SUFFIX, "onehippo.com");
+        assertClassified("(preview|live)\\.example\\.com", DecoratorConfiguration.MatchType.REGEX, null);
+        assertClassified("www[0-9]\\.example\\.com", DecoratorConfiguration.MatchType.REGEX, null);
+        assertClassified(".*", DecoratorConfiguration.MatchType.SUFFIX, "");
+    }
+
+    @Test
+    public void unescapedDotIsLiteralDot() {
+        final HostMatcher matcher = matcher("127.0.0.1", "/local");
+        assertEquals("/local", matcher.match("127.0.0.1").getContextPath());
+        assertSame(DecoratorConfiguration.INVALID, matcher.match("127a0b0c1"));
+    }
+
+    @Test
+    public void literalsResolveThroughIndex() {
+        final HostMatcher matcher = matcher("localhost", "/site", "www\\.example\\.com", "/www");
+        assertEquals("/site", matcher.match("localhost").getContextPath());
+        assertEquals("/www", matcher.match("www.example.com").getContextPath());
+        assertSame(DecoratorConfiguration.INVALID, matcher.match("example.com"));
+        assertSame(DecoratorConfiguration.INVALID, matcher.match(null));
+    }
+
+    @Test
+    public void suffixTrieKeepsRegexSemantics() {
+        final HostMatcher matcher = matcher(".*example\\.com", "/any", ".*\\.example\\.org", "/sub");
+        assertEquals("/any", matcher.match("example.com").getContextPath());
+        assertEquals("/any", matcher.match("www.example.com").getContextPath());
+        assertEquals("/any", matcher.match("badexample.com").getContextPath());
+        assertEquals("/sub", matcher.match("www.example.org").getContextPath());
+        assertSame(DecoratorConfiguration.INVALID, matcher.match("example.org"));
+        assertSame(DecoratorConfiguration.INVALID, matcher.match("example.com.evil.io"));
+    }
+
+    @Test
+    public void catchAllMatchesAfterEarlierConfigurations() {
+        final HostMatcher matcher = matcher("localhost", "/local", ".*", "/any");
+        assertEquals("/local", matcher.match("localhost").getContextPath());
+        assertEquals("/any", matcher.match("www.example.com").getContextPath());
+    }
+
+    @Test
+    public void suffixMatchFollowsPriorityNotLength() {
+        assertEquals("/short", matcher(".*\\.b\\.com", "/short", ".*\\.a\\.b\\.com", "/long")
+                .match("x.a.b.com").getContextPath());
+        assertEquals("/long", matcher(".*\\.a\\.b\\.com", "/long", ".*\\.b\\.com", "/short")
+                .match("x.a.b.com").getContextPath());
+    }
+
+    @Test
+    public void exactAndSuffixCollisionsFollowPriority() {
+        final HostMatcher exactFirst = matcher("example\\.com", "/exact", ".*example\\.com", "/suffix");
+        assertEquals("/exact", exactFirst.match("example.com").getContextPath());
+        assertEquals("/suffix", exactFirst.match("www.example.com").getContextPath());
+
+        final HostMatcher suffixFirst = matcher(".*example\\.com", "/suffix", "example\\.com", "/exact");
+        assertEquals("/suffix", suffixFirst.match("example.com").getContextPath());
+    }
+
+    @Test
+    public void firstConfigurationWinsAcrossMatchTypes() {
+        final HostMatcher regexFirst = matcher("(www|cdn)\\.example\\.com", "/regex", ".*example\\.com", "/suffix",
+                "www\\.example\\.com", "/exact");
+        assertEquals("/regex", regexFirst.match("www.example.com").getContextPath());
+        assertEquals("/regex", regexFirst.match("cdn.example.com").getContextPath());
+        assertEquals("/suffix", regexFirst.match("static.example.com").getContextPath());
+
+        final HostMatcher exactFirst = matcher("www\\.example\\.com", "/exact", "(www|cdn)\\.example\\.com", "/regex",
+                ".*example\\.com", "/suffix");
+        assertEquals("/exact", exactFirst.match("www.example.com").getContextPath());
+        assertEquals("/regex", exactFirst.match("cdn.example.com").getContextPath());
+    }
+
+    @Test
+    public void combinedAlternationResolvesPriorityOfGroups() {
+        final HostMatcher matcher = matcher("(a|b)(x)?\\.example\\.com", "/first", "[a-z]+\\.example\\.com", "/second",
+                "(a+)-\\1\\.example\\.com", "/backreference");
+        assertEquals("/first", matcher.match("ax.example.com").getContextPath());
+        assertEquals("/second", matcher.match("cx.example.com").getContextPath());
+        assertEquals("/backreference", matcher.match("aa-aa.example.com").getContextPath());
+        assertSame(DecoratorConfiguration.INVALID, matcher.match("aa-a.example.com"));
+    }
+
+    private static void assertClassified(final String pattern, final DecoratorConfiguration.MatchType type, final String value) {
+        final DecoratorConfiguration config = configurations(pattern, "/").iterator().next();
+        assertEquals(pattern, type, config.getMatchType());
+        if (value != null) {
+            assertEquals(pattern, value, config.getMatchValue());
+        }
+    }
+
+    private static HostMatcher matcher(final String... patternsAndContextPaths) {
+        return HostMatcher.compile(configurations(patternsAndContextPaths));
+    }
+
+    private static Set<DecoratorConfiguration> configurations(final String... patternsAndContextPaths) {
+        final Map<String, String> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < patternsAndContextPaths.length; i += 2) {
+            mappings.put(patternsAndContextPaths[i], patternsAndContextPaths[i + 1]);
+        }
+        return DecoratorConfiguration.Builder.start().hosts(mappings).enabled(true).build();
+    }
+}
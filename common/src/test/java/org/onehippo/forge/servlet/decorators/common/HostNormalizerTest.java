@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HostNormalizerTest {
+
+    @Test
+    public void foldsCase() {
+        assertEquals("www.example.com", HostNormalizer.normalize("WWW.Example.COM"));
+    }
+
+    @Test
+    public void stripsDefaultPortsAndTrailingDots() {
+        assertEquals("example.com", HostNormalizer.normalize("example.com:80"));
+        assertEquals("example.com", HostNormalizer.normalize("example.com."));
+        assertEquals("example.com", HostNormalizer.normalize("Example.com.:443"));
+    }
+
+    @Test
+    public void keepsOtherPorts() {
+        final String host = "localhost:8080";
+        assertSame(host, HostNormalizer.normalize(host));
+        assertEquals("example.com:8443", HostNormalizer.normalize("Example.com:8443"));
+        assertEquals("example.com:4430", HostNormalizer.normalize("example.com:4430"));
+    }
+
+    @Test
+    public void keepsFirstHop() {
+        assertEquals("example.com", HostNormalizer.normalize("example.com:443, proxy.internal"));
+        assertEquals("example.com", HostNormalizer.normalize(" example.com , proxy.internal"));
+    }
+
+    @Test
+    public void stripsPortsFromBracketedIpv6() {
+        assertEquals("[::1]", HostNormalizer.normalize("[::1]:80"));
+        assertEquals("[::1]:8080", HostNormalizer.normalize("[::1]:8080"));
+        assertEquals("[2001:db8::1]", HostNormalizer.normalize("[2001:DB8::1]:443"));
+        assertEquals("[2001:db8::1]", HostNormalizer.normalize("[2001:DB8::1]"));
+    }
+
+    @Test
+    public void keepsUnbracketedIpv6() {
+        assertEquals("::1", HostNormalizer.normalize("::1"));
+        assertEquals("2001:db8::1", HostNormalizer.normalize("2001:db8::1"));
+        assertEquals("2001:db8::8080", HostNormalizer.normalize("2001:DB8::8080"));
+        assertEquals("2001:db8::80", HostNormalizer.normalize("2001:DB8::80"));
+    }
+
+    @Test
+    public void returnsNormalizedHostAsIs() {
+        final String host = "www.example.com";
+        assertSame(host, HostNormalizer.normalize(host));
+        final String ipv6 = "[::1]";
+        assertSame(ipv6, HostNormalizer.normalize(ipv6));
+        assertNull(HostNormalizer.normalize(null));
+    }
+
+    @Test
+    public void internsNormalizedCopies() {
+        assertSame(HostNormalizer.normalize(new String("Example.com")), HostNormalizer.normalize("example.COM:80"));
+    }
+}
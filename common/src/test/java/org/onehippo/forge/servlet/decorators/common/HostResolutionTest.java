@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HostResolutionTest {
+
+    @Test
+    public void resolutionsOfOlderVersionAreResolvedAgainOnLookup() {
+        for (CacheSettings.Policy policy : CacheSettings.Policy.values()) {
+            final ResolutionCache<HostResolution> cache = new CacheSettings(policy, 10, 3600, 10).createCache();
+            final AtomicInteger resolutions = new AtomicInteger();
+
+            final HostResolution a1 = lookup(cache, "a", 1, resolutions);
+            lookup(cache, "b", 1, resolutions);
+            assertSame(policy.name(), a1, lookup(cache, "a", 1, resolutions));
+            assertEquals(policy.name(), 2, resolutions.get());
+
+            // a reload doesn't invalidate the cache, only the looked up host is resolved again
+            final HostResolution a2 = lookup(cache, "a", 2, resolutions);
+            assertEquals(policy.name(), 2, a2.getVersion());
+            assertEquals(policy.name(), 3, resolutions.get());
+            assertEquals(policy.name(), 2, cache.size());
+        }
+    }
+
+    @Test
+    public void freshness() {
+        final HostResolution resolution = new HostResolution(DecoratorConfiguration.INVALID, 1);
+        assertTrue(resolution.isCurrent(1));
+        assertFalse(resolution.isCurrent(2));
+        assertTrue(resolution.isFresh(Long.MAX_VALUE));
+        assertFalse(resolution.isFresh(0));
+    }
+
+    private static HostResolution lookup(final ResolutionCache<HostResolution> cache, final String host,
+                                         final long version, final AtomicInteger resolutions) {
+        return cache.get(host, cached -> cached.isCurrent(version), key -> {
+            resolutions.incrementAndGet();
+            return new HostResolution(DecoratorConfiguration.INVALID, version);
+        });
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory JCR node tree for tests, exposed through dynamic proxies implementing the methods used by the
+ * configuration loader and {@link ConfigurationChecksum}. Property values are strings, string arrays, longs or booleans.
+ */
+final class MockNode {
+
+    private final MockNode parent;
+    private final String name;
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+    private final Map<String, MockNode> children = new LinkedHashMap<>();
+
+    private MockNode(final MockNode parent, final String name) {
+        this.parent = parent;
+        this.name = name;
+    }
+
+    static MockNode root() {
+        return new MockNode(null, "");
+    }
+
+    /**
+     * @return existing or new node at given path relative to this node
+     */
+    MockNode node(final String relPath) {
+        MockNode node = this;
+        for (String segment : relPath.split("/")) {
+            if (!segment.isEmpty()) {
+                final MockNode current = node;
+                node = current.children.computeIfAbsent(segment, child -> new MockNode(current, child));
+            }
+        }
+        return node;
+    }
+
+    MockNode set(final String property, final Object value) {
+        properties.put(property, value);
+        return this;
+    }
+
+    void remove(final String child) {
+        children.remove(child);
+    }
+
+    String getPath() {
+        if (parent == null) {
+            return "/";
+        }
+        return parent.parent == null ? "/" + name : parent.getPath() + "/" + name;
+    }
+
+    private MockNode find(final String path) {
+        MockNode node = this;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return null;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return session reading the tree of this (root) node
+     */
+    Session session() {
+        return proxy(Session.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getNode":
+                    return existing((String) args[0]).node();
+                case "nodeExists":
+                    return find((String) args[0]) != null;
+                case "isLive":
+                    return true;
+                case "refresh":
+                case "logout":
+                case "save":
+                    return null;
+                default:
+                    return unsupported(method.getName());
+            }
+        });
+    }
+
+    Node node() {
+        return proxy(Node.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getPath":
+                    return getPath();
+                case "getNode":
+                    return existing((String) args[0]).node();
+                case "hasNode":
+                    return find((String) args[0]) != null;
+                case "getNodes":
+                    final List<Node> nodes = new ArrayList<>();
+                    children.values().forEach(child -> nodes.add(child.node()));
+                    return iterator(NodeIterator.class, "nextNode", nodes.iterator());
+                case "hasProperty":
+                    return properties.containsKey((String) args[0]);
+                case "getProperty":
+                    if (!properties.containsKey((String) args[0])) {
+                        throw new PathNotFoundException();
+                    }
+                    return property((String) args[0], properties.get((String) args[0]));
+                case "setProperty":
+                    set((String) args[0], args[1]);
+                    return null;
+                case "addNode":
+                    return node((String) args[0]).node();
+                case "getProperties":
+                    final List<Property> list = new ArrayList<>();
+                    properties.forEach((key, value) -> list.add(property(key, value)));
+                    return iterator(PropertyIterator.class, "nextProperty", list.iterator());
+                default:
+                    return unsupported(method.getName());
+            }
+        });
+    }
+
+    private MockNode existing(final String path) throws PathNotFoundException {
+        final MockNode node = find(path);
+        if (node == null) {
+            throw new PathNotFoundException();
+        }
+        return node;
+    }
+
+    private static Property property(final String name, final Object value) {
+        return proxy(Property.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "isMultiple":
+                    return value instanceof String[];
+                case "getValues":
+                    final String[] strings = (String[]) value;
+                    final Value[] values = new Value[strings.length];
+                    for (int i = 0; i < strings.length; i++) {
+                        values[i] = value(strings[i]);
+                    }
+                    return values;
+                case "getValue":
+                    return value(String.valueOf(value));
+                case "getString":
+                    return String.valueOf(value);
+                case "getLong":
+                    return value instanceof Long ? value : Long.parseLong(String.valueOf(value));
+                case "getBoolean":
+                    return value instanceof Boolean ? value : Boolean.parseBoolean(String.valueOf(value));
+                default:
+                    return unsupported(method.getName());
+            }
+        });
+    }
+
+    private static Value value(final String value) {
+        return proxy(Value.class, (proxy, method, args) -> {
+            if ("getString".equals(method.getName())) {
+                return value;
+            }
+            return unsupported(method.getName());
+        });
+    }
+
+    private static <T> T iterator(final Class<T> type, final String next, final Iterator<?> items) {
+        return proxy(type, (proxy, method, args) -> {
+            final String methodName = method.getName();
+            if ("hasNext".equals(methodName)) {
+                return items.hasNext();
+            }
+            if ("next".equals(methodName) || next.equals(methodName)) {
+                return items.next();
+            }
+            return unsupported(methodName);
+        });
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MockNode.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName();
+                        default:
+                            return handler.invoke(proxy, method, args);
+                    }
+                }));
+    }
+
+    private static Object unsupported(final String method) {
+        throw new UnsupportedOperationException(method);
+    }
+}
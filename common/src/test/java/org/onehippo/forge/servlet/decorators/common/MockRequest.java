@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Servlet request for tests, exposed through a dynamic proxy implementing the methods used by the decorated request
+ * and the filters. Its request URI and context path can be changed, like a container does on forward.
+ */
+final class MockRequest {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private String scheme = "http://localhost";
+    private String requestUri;
+    private String contextPath;
+    private AsyncContext asyncContext;
+
+    MockRequest(final String requestUri, final String contextPath) {
+        this.requestUri = requestUri;
+        this.contextPath = contextPath;
+    }
+
+    MockRequest dispatch(final String requestUri, final String contextPath) {
+        this.requestUri = requestUri;
+        this.contextPath = contextPath;
+        return this;
+    }
+
+    /**
+     * @param asyncContext context of the started asynchronous processing, or null if not started
+     */
+    MockRequest async(final AsyncContext asyncContext) {
+        this.asyncContext = asyncContext;
+        return this;
+    }
+
+    MockRequest scheme(final String scheme) {
+        this.scheme = scheme;
+        return this;
+    }
+
+    HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(MockRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRequestURI":
+                            return requestUri;
+                        case "getContextPath":
+                            return contextPath;
+                        case "getRequestURL":
+                            return new StringBuffer(scheme + requestUri);
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove((String) args[0]);
+                            return null;
+                        case "isAsyncStarted":
+                            return asyncContext != null;
+                        case "getAsyncContext":
+                            if (asyncContext == null) {
+                                throw new IllegalStateException("not async");
+                            }
+                            return asyncContext;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "MockRequest " + requestUri;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
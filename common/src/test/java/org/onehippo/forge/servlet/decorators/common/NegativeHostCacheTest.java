@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeHostCacheTest {
+
+    @Test
+    public void remembersHostsPerVersion() {
+        final NegativeHostCache cache = new NegativeHostCache(10);
+        cache.add("unknown.com", 1);
+        assertTrue(cache.contains("unknown.com", 1));
+        assertFalse(cache.contains("unknown.com", 2));
+        assertFalse(cache.contains("other.com", 1));
+        assertEquals(1, cache.getRejectedCount());
+
+        cache.add("unknown.com", 2);
+        assertTrue(cache.contains("unknown.com", 2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void dropsOldestHostsOnceFull() {
+        final NegativeHostCache cache = new NegativeHostCache(3);
+        for (int i = 0; i < 100; i++) {
+            cache.add("host" + i + ".com", 1);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(97, cache.getEvictionCount());
+        assertFalse(cache.contains("host96.com", 1));
+        assertTrue(cache.contains("host97.com", 1));
+        assertTrue(cache.contains("host99.com", 1));
+    }
+
+    @Test
+    public void newVersionKeepsEvictionPosition() {
+        final NegativeHostCache cache = new NegativeHostCache(2);
+        cache.add("a.com", 1);
+        cache.add("b.com", 1);
+        cache.add("a.com", 2);
+        cache.add("c.com", 2);
+        assertFalse(cache.contains("a.com", 2));
+        assertTrue(cache.contains("b.com", 1));
+        assertTrue(cache.contains("c.com", 2));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PropertiesConfigurationSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsModuleSettingsAndConfigurationsInOrder() throws IOException {
+        final ConfigurationData data = read(
+                "hostheaders=X-Forwarded-Host, Host",
+                "configurations=onehippo, local",
+                "local.hostnames.0=localhost",
+                "local.hostnames.1=127\\\\.0\\\\.0\\\\.1",
+                "local.contextpaths.0=/site",
+                "local.contextpaths.1=/site",
+                "onehippo.hostnames=.*onehippo\\\\.com",
+                "onehippo.contextpaths=/",
+                "onehippo.enabled=false",
+                "onehippo.hostheader=Host",
+                "cachepolicy=lru",
+                "cachemaxsize=50",
+                "cacheexpiresinseconds=600",
+                "negativecachemaxsize=20",
+                "cacherefreshafterinseconds=60",
+                "reloaddelayinmillis=250");
+
+        assertEquals(ImmutableList.of("X-Forwarded-Host", "Host"), data.getHostHeaders());
+        assertEquals(ImmutableList.of("onehippo", "local"), new ArrayList<>(data.getNodeConfigurations().keySet()));
+
+        final List<DecoratorConfiguration> local = list(data.getNodeConfigurations().get("local"));
+        assertEquals(2, local.size());
+        assertEquals("localhost", local.get(0).getHostPattern().pattern());
+        assertEquals("127\\.0\\.0\\.1", local.get(1).getHostPattern().pattern());
+        assertEquals("/site", local.get(1).getContextPath());
+        assertTrue(local.get(0).isEnabled());
+        assertEquals(DecoratorConst.HEADER_X_FORWARDED_HOST, local.get(0).getHostHeader());
+
+        final DecoratorConfiguration onehippo = data.getNodeConfigurations().get("onehippo").iterator().next();
+        assertEquals(".*onehippo\\.com", onehippo.getHostPattern().pattern());
+        assertEquals("/", onehippo.getContextPath());
+        assertFalse(onehippo.isEnabled());
+        assertEquals("Host", onehippo.getHostHeader());
+
+        assertEquals(new CacheSettings(CacheSettings.Policy.LRU, 50, 600, 20, 60), data.getCacheSettings());
+        assertEquals(Long.valueOf(250), data.getReloadDelayInMillis());
+    }
+
+    @Test
+    public void ordersConfigurationsByNameWithoutConfigurationsProperty() throws IOException {
+        final ConfigurationData data = read(
+                "zeta.hostnames.0=zeta\\\\.example\\\\.com",
+                "zeta.contextpaths.0=/zeta",
+                "alpha.hostnames=alpha\\\\.example\\\\.com",
+                "alpha.contextpaths=/alpha");
+
+        assertEquals(ImmutableList.of("alpha", "zeta"), new ArrayList<>(data.getNodeConfigurations().keySet()));
+        assertTrue(data.getHostHeaders().isEmpty());
+        assertEquals(CacheSettings.DEFAULT, data.getCacheSettings());
+        assertNull(data.getReloadDelayInMillis());
+    }
+
+    @Test
+    public void skipsMappingsOfConfigurationWithUnpairedContextPaths() throws IOException {
+        final ConfigurationData data = read(
+                "broken.hostnames.0=localhost",
+                "broken.hostnames.1=127\\\\.0\\\\.0\\\\.1",
+                "broken.contextpaths.0=/site");
+
+        assertTrue(data.getNodeConfigurations().get("broken").isEmpty());
+    }
+
+    @Test
+    public void keepsCommasOfHostNamePatterns() throws IOException {
+        final ConfigurationData data = read(
+                "single.hostnames=[a-z]{2,8}\\\\.example\\\\.com",
+                "single.contextpaths=/single",
+                "indexed.hostnames.0=www{1,2}\\\\.example\\\\.org",
+                "indexed.hostnames.1=localhost",
+                "indexed.contextpaths.0=/org",
+                "indexed.contextpaths.1=/local");
+
+        final DecoratorConfiguration single = data.getNodeConfigurations().get("single").iterator().next();
+        assertEquals("[a-z]{2,8}\\.example\\.com", single.getHostPattern().pattern());
+        final List<DecoratorConfiguration> indexed = list(data.getNodeConfigurations().get("indexed"));
+        assertEquals(2, indexed.size());
+        assertEquals("www{1,2}\\.example\\.org", indexed.get(0).getHostPattern().pattern());
+        assertEquals("/local", indexed.get(1).getContextPath());
+    }
+
+    @Test
+    public void watchesFileGivenByRelativePath() {
+        final PropertiesConfigurationSource source = new PropertiesConfigurationSource("decorators.properties");
+        source.start(() -> {
+        });
+        source.stop();
+    }
+
+    @Test
+    public void usesDefaultForInvalidNumbers() throws IOException {
+        final ConfigurationData data = read("cachemaxsize=many");
+
+        assertEquals(CacheSettings.DEFAULT.getMaxSize(), data.getCacheSettings().getMaxSize());
+    }
+
+    @Test
+    public void returnsNullIfNotFound() throws IOException {
+        assertNull(new PropertiesConfigurationSource(folder.getRoot().toPath().resolve("missing.properties").toString()).read());
+        assertNull(new PropertiesConfigurationSource(PropertiesConfigurationSource.CLASSPATH_PREFIX + "missing.properties").read());
+    }
+
+    private ConfigurationData read(final String... lines) throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, ImmutableList.copyOf(lines), StandardCharsets.UTF_8);
+        return new PropertiesConfigurationSource(file.toString()).read();
+    }
+
+    private static List<DecoratorConfiguration> list(final Collection<DecoratorConfiguration> configurations) {
+        return new ArrayList<>(configurations);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RefreshAheadTest {
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final Executor refresher = refreshes::add;
+
+    @Test
+    public void staleValueIsServedWhileRefreshing() {
+        for (CacheSettings.Policy policy : CacheSettings.Policy.values()) {
+            final ResolutionCache<String> cache = cache(policy);
+            cache.put("a", "old");
+
+            assertEquals(policy.name(), "old", lookup(cache, "new"));
+            assertEquals(policy.name(), "old", lookup(cache, "newer"));
+            // one refresh per host at a time
+            assertEquals(policy.name(), 1, refreshes.size());
+
+            runRefreshes();
+            assertEquals(policy.name(), "new", cache.getIfPresent("a"));
+            assertEquals(policy.name(), 1, cache.getRefreshCount());
+        }
+    }
+
+    @Test
+    public void refreshToNothingRemovesValue() {
+        for (CacheSettings.Policy policy : CacheSettings.Policy.values()) {
+            final ResolutionCache<String> cache = cache(policy);
+            cache.put("a", "old");
+            lookup(cache, null);
+            runRefreshes();
+            assertNull(policy.name(), cache.getIfPresent("a"));
+        }
+    }
+
+    @Test
+    public void refreshDoesNotResurrectInvalidatedHost() {
+        for (CacheSettings.Policy policy : CacheSettings.Policy.values()) {
+            final ResolutionCache<String> cache = cache(policy);
+            cache.put("a", "old");
+            lookup(cache, "new");
+            cache.invalidateAll();
+            runRefreshes();
+            assertNull(policy.name(), cache.getIfPresent("a"));
+        }
+    }
+
+    @Test
+    public void rejectedRefreshRunsOnCallingThread() {
+        for (CacheSettings.Policy policy : CacheSettings.Policy.values()) {
+            final ResolutionCache<String> cache = cache(policy);
+            cache.put("a", "old");
+            assertEquals(policy.name(), "old", cache.getRefreshing("a", value -> true, value -> false, host -> "new",
+                    task -> {
+                        throw new RejectedExecutionException("shut down");
+                    }));
+            assertEquals(policy.name(), "new", cache.getIfPresent("a"));
+        }
+    }
+
+    private static ResolutionCache<String> cache(final CacheSettings.Policy policy) {
+        return new CacheSettings(policy, 10, 3600, 10).createCache();
+    }
+
+    /**
+     * Looks up host "a", its cached value being current but not fresh.
+     */
+    private String lookup(final ResolutionCache<String> cache, final String resolved) {
+        return cache.getRefreshing("a", value -> true, value -> false, host -> resolved, refresher);
+    }
+
+    private void runRefreshes() {
+        final List<Runnable> due = new ArrayList<>(refreshes);
+        refreshes.clear();
+        due.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestScopeTest {
+
+    private final List<AsyncListener> listeners = new ArrayList<>();
+    private final AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(AsyncContext.class.getClassLoader(),
+            new Class<?>[]{AsyncContext.class}, (proxy, method, args) -> {
+                if ("addListener".equals(method.getName())) {
+                    listeners.add((AsyncListener) args[0]);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    @Test
+    public void endsRightAwayWithoutAsyncProcessing() {
+        final AtomicInteger ended = new AtomicInteger();
+        RequestScope.end(new MockRequest("/", "").request(), ended::incrementAndGet);
+        assertEquals(1, ended.get());
+    }
+
+    @Test
+    public void endsOnceWhenAsyncProcessingCompletes() throws IOException {
+        final AtomicInteger ended = new AtomicInteger();
+        RequestScope.end(new MockRequest("/", "").async(asyncContext).request(), ended::incrementAndGet);
+        assertEquals(0, ended.get());
+        assertEquals(1, listeners.size());
+
+        final AsyncListener listener = listeners.get(0);
+        // restarted by an async dispatch: stays registered
+        listener.onStartAsync(new AsyncEvent(asyncContext));
+        assertEquals(2, listeners.size());
+        assertEquals(0, ended.get());
+
+        listener.onTimeout(new AsyncEvent(asyncContext));
+        listener.onComplete(new AsyncEvent(asyncContext));
+        assertEquals(1, ended.get());
+    }
+
+    @Test
+    public void originalScopesNest() {
+        final HippoDecoratedServletRequest request = new HippoDecoratedServletRequest(
+                new MockRequest("/site/news", "/site").request(),
+                DecoratorConfiguration.Builder.start().hosts(Collections.singletonMap("localhost", "/")).enabled(true)
+                        .build().iterator().next());
+        request.pushOriginal();
+        request.pushOriginal();
+        assertEquals("/site/news", request.getRequestURI());
+        request.popOriginal();
+        assertTrue(request.isServeOriginal());
+        assertEquals("/site", request.getContextPath());
+        request.popOriginal();
+        assertFalse(request.isServeOriginal());
+        assertEquals("/news", request.getRequestURI());
+
+        // unbalanced pops don't disable the next scope
+        request.popOriginal();
+        request.pushOriginal();
+        assertTrue(request.isServeOriginal());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SharedSchedulerTest {
+
+    @Test
+    public void stopsWhenLastOwnerReleases() {
+        final SharedScheduler first = SharedScheduler.acquire(false);
+        final SharedScheduler second = SharedScheduler.acquire(false);
+        assertSame(first, second);
+
+        first.release();
+        assertSame(first, SharedScheduler.current());
+        second.release();
+        assertNull(SharedScheduler.current());
+
+        try {
+            first.execute(() -> {
+            });
+            throw new AssertionError("stopped scheduler accepted a task");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(1, first.getRejectedTaskCount());
+        }
+    }
+
+    @Test
+    public void failingPeriodicTaskKeepsRunning() throws InterruptedException {
+        final SharedScheduler scheduler = SharedScheduler.acquire(false);
+        try {
+            // a run is counted as failed after it counted down, the fourth run follows three counted failures
+            final CountDownLatch runs = new CountDownLatch(4);
+            final ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(() -> {
+                runs.countDown();
+                throw new IllegalStateException("expected by test");
+            }, 0, 10, TimeUnit.MILLISECONDS);
+            assertTrue(runs.await(5, TimeUnit.SECONDS));
+            task.cancel(false);
+            assertTrue(scheduler.getFailedTaskCount() >= 3);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    @Test
+    public void queueIsBoundedAndCancelledTasksLeaveIt() {
+        final SharedScheduler scheduler = SharedScheduler.acquire(false);
+        final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < DecoratorConst.SCHEDULER_MAX_QUEUED; i++) {
+                tasks.add(scheduler.schedule(() -> {
+                }, 1, TimeUnit.HOURS));
+            }
+            assertEquals(DecoratorConst.SCHEDULER_MAX_QUEUED, scheduler.getQueueSize());
+            try {
+                scheduler.schedule(() -> {
+                }, 1, TimeUnit.HOURS);
+                throw new AssertionError("full scheduler accepted a task");
+            } catch (RejectedExecutionException expected) {
+                assertEquals(DecoratorConst.SCHEDULER_MAX_QUEUED, scheduler.getQueueSize());
+            }
+
+            tasks.forEach(task -> task.cancel(false));
+            assertEquals(0, scheduler.getQueueSize());
+        } finally {
+            scheduler.release();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onehippo.forge.servlet.decorators.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        final Map<String, Collection<DecoratorConfiguration>> nodes = new LinkedHashMap<>();
+        nodes.put("local", DecoratorConfiguration.Builder.start()
+                .hosts(ImmutableMap.of("localhost", "/site", "127\\.0\\.0\\.1", "/site"))
+                .enabled(true).build());
+        nodes.put("onehippo", DecoratorConfiguration.Builder.start()
+                .hosts(ImmutableMap.of(".*onehippo\\.com", "/", "(preview|live)\\.example\\.com", "/preview"))
+                .hostHeader("Host").enabled(false).build());
+        final CacheSettings cacheSettings = new CacheSettings(CacheSettings.Policy.LRU, 50, 600, 20, 60);
+        final ConfigurationSnapshot snapshot = new ConfigurationSnapshot(7, nodes, cacheSettings,
+                ImmutableList.of("X-Forwarded-Host", "Host"), new Date(1_500_000_000_000L));
+        final Path file = folder.getRoot().toPath().resolve("snapshots/decorators.snapshot");
+
+        SnapshotFile.write(snapshot, file);
+        final ConfigurationSnapshot restored = SnapshotFile.read(file);
+
+        assertNotNull(restored);
+        assertTrue(restored.isRestored());
+        assertEquals(ConfigurationSnapshot.RESTORED_VERSION, restored.getVersion());
+        assertEquals(snapshot.getLoadDate(), restored.getLoadDate());
+        assertEquals(cacheSettings, restored.getCacheSettings());
+        assertEquals(snapshot.getHostHeaders(), restored.getHostHeaders());
+        assertEquals(snapshot.getNodeConfigurations().keySet(), restored.getNodeConfigurations().keySet());
+        for (Map.Entry<String, List<DecoratorConfiguration>> entry : snapshot.getNodeConfigurations().entrySet()) {
+            final List<DecoratorConfiguration> expected = entry.getValue();
+            final List<DecoratorConfiguration> actual = restored.getNodeConfigurations().get(entry.getKey());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getHostPattern().pattern(), actual.get(i).getHostPattern().pattern());
+                assertEquals(expected.get(i).getContextPath(), actual.get(i).getContextPath());
+                assertEquals(expected.get(i).getHostHeader(), actual.get(i).getHostHeader());
+                assertEquals(expected.get(i).isEnabled(), actual.get(i).isEnabled());
+                assertEquals(expected.get(i).getMatchType(), actual.get(i).getMatchType());
+            }
+        }
+        assertEquals("/site", restored.getHostMatcher().match("127.0.0.1").getContextPath());
+        assertFalse(restored.getHostMatcher().match("www.onehippo.com").isEnabled());
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            // the temporary file was moved into place
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void rejectsCorruptFile() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("decorators.snapshot");
+        SnapshotFile.write(new ConfigurationSnapshot(1, ImmutableMap.of("local", DecoratorConfiguration.Builder.start()
+                .hosts(ImmutableMap.of("localhost", "/site")).enabled(true).build()), CacheSettings.DEFAULT,
+                ImmutableList.of(), new Date()), file);
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(file, bytes);
+
+        assertNull(SnapshotFile.read(file));
+    }
+
+    @Test
+    public void ignoresMissingAndForeignFiles() throws IOException {
+        assertNull(SnapshotFile.read(null));
+        assertNull(SnapshotFile.read(folder.getRoot().toPath().resolve("missing.snapshot")));
+        final Path foreign = folder.newFile("foreign.snapshot").toPath();
+        Files.write(foreign, "not a snapshot".getBytes("UTF-8"));
+        assertNull(SnapshotFile.read(foreign));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.servlet.decorators.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TinyLfuResolutionCacheTest {
+
+    @Test
+    public void frequentHostIsAdmittedOverOldestHost() {
+        final TinyLfuResolutionCache<String> cache = new TinyLfuResolutionCache<>(2, 3600);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        for (int i = 0; i < 5; i++) {
+            cache.getIfPresent("c");
+        }
+        cache.put("c", "C");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("C", cache.getIfPresent("c"));
+        assertEquals("B", cache.getIfPresent("b"));
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void oneOffHostDoesNotEvictFrequentHosts() {
+        final TinyLfuResolutionCache<String> cache = new TinyLfuResolutionCache<>(2, 3600);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        for (int i = 0; i < 5; i++) {
+            cache.getIfPresent("a");
+            cache.getIfPresent("b");
+        }
+        cache.put("c", "C");
+
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals("A", cache.getIfPresent("a"));
+        assertEquals("B", cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void removedHostCanBeCachedAndEvictedAgain() {
+        final TinyLfuResolutionCache<String> cache = new TinyLfuResolutionCache<>(2, 3600);
+        cache.put("a", "A");
+        // rejected as outdated and resolved to nothing: removed
+        assertNull(cache.get("a", value -> false, host -> null));
+        assertEquals(0, cache.size());
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        for (int i = 0; i < 5; i++) {
+            cache.getIfPresent("c");
+        }
+        cache.put("c", "C");
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("B", cache.getIfPresent("b"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void outdatedValueIsResolvedAgain() {
+        final TinyLfuResolutionCache<String> cache = new TinyLfuResolutionCache<>(10, 3600);
+        cache.put("a", "v1");
+        assertEquals("v1", cache.get("a", "v1"::equals, host -> "unexpected"));
+        assertEquals("v2", cache.get("a", "v2"::equals, host -> "v2"));
+        assertEquals("v2", cache.getIfPresent("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void concurrentMissesShareOneResolution() throws InterruptedException {
+        final TinyLfuResolutionCache<String> cache = new TinyLfuResolutionCache<>(10, 3600);
+        final CountDownLatch resolving = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger resolutions = new AtomicInteger();
+        final AtomicReference<String> other = new AtomicReference<>();
+
+        final Thread first = new Thread(() -> cache.get("a", value -> true, host -> {
+            resolutions.incrementAndGet();
+            resolving.countDown();
+            await(release);
+            return "A";
+        }));
+        first.start();
+        assertTrue(resolving.await(5, TimeUnit.SECONDS));
+        final Thread second = new Thread(() -> other.set(cache.get("a", value -> true, host -> {
+            resolutions.incrementAndGet();
+            return "B";
+        })));
+        second.start();
+        // the second lookup waits for the first resolution
+        second.join(200);
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertEquals(1, resolutions.get());
+        assertEquals("A", other.get());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
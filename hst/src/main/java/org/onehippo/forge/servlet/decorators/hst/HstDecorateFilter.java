@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 public class HstDecorateFilter extends ConfigurableDecoratorFilter {
 
     private static final Logger log = LoggerFactory.getLogger(HstDecorateFilter.class);
+    private volatile boolean waitingLogged;
 
 
     @Override
@@ -42,7 +43,11 @@ public class HstDecorateFilter extends ConfigurableDecoratorFilter {
             } else {
                 initialized = true;
             }
+        } else if (waitingLogged) {
+            log.debug("HstService not available yet...waiting..");
         } else {
+            // info once, polled until available
+            waitingLogged = true;
             log.info("HstService not available yet...waiting..");
         }
 
@@ -13,10 +13,85 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.onehippo.forge.servlet.decorators.hst;
 
 import org.onehippo.forge.servlet.decorators.common.DecoratorConfigurationLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Keeps one read session for all reloads instead of logging in on every reload. The session is refreshed before
+ * each reload and replaced when it is no longer live or reading with it failed.
+ */
 public class HstDecoratorConfigurationLoader extends DecoratorConfigurationLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(HstDecoratorConfigurationLoader.class);
+
+    // not a monitor: reading the configuration may run on a virtual thread, which a monitor would pin while blocked
+    private final ReentrantLock sessionLock = new ReentrantLock();
+    private Session session;
+
+    @Override
+    protected Session getSession() {
+        sessionLock.lock();
+        try {
+            if (session != null && session.isLive()) {
+                try {
+                    // read only, so no pending changes are lost; makes the latest saved configuration visible:
+                    session.refresh(false);
+                    return session;
+                } catch (RepositoryException e) {
+                    log.warn("Cannot refresh decorator configuration session, logging in again: {}", e.toString());
+                    logout();
+                }
+            }
+            session = super.getSession();
+            return session;
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    @Override
+    protected void closeSession(final Session session) {
+        // kept for the next reload
+    }
+
+    @Override
+    protected void sessionFailed(final Session failed) {
+        sessionLock.lock();
+        try {
+            if (failed == session) {
+                logout();
+            }
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        sessionLock.lock();
+        try {
+            logout();
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    private void logout() {
+        if (session != null) {
+            try {
+                session.logout();
+            } catch (RuntimeException e) {
+                log.debug("Error logging out stale session", e);
+            }
+            session = null;
+        }
+    }
 }